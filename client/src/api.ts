@@ -1,4 +1,5 @@
 const HOST = "http://localhost:3232";
+const WS_HOST = HOST.replace(/^http/, "ws");
 
 // query get api endpoint
 export async function queryAPI(
@@ -31,3 +32,36 @@ export async function queryAPIPost(
   }
   return response.json();
 }
+
+// subscribe to room changes pushed over the websocket ("lobby" or "room:<roomID>").
+// the server answers with a snapshot, then one message per change. reconnects when
+// the connection drops and returns a function that closes it for good.
+export function subscribeRooms(
+  topic: string,
+  onMessage: (message: any) => void
+) {
+  let socket: WebSocket;
+  let closed = false;
+  let retry: ReturnType<typeof setTimeout> | null = null;
+
+  const connect = () => {
+    socket = new WebSocket(`${WS_HOST}/ws/rooms`);
+    socket.onopen = () =>
+      socket.send(JSON.stringify({ action: "subscribe", topic }));
+    socket.onmessage = (event) => onMessage(JSON.parse(event.data));
+    socket.onclose = () => {
+      if (!closed) {
+        retry = setTimeout(connect, 2000);
+      }
+    };
+  };
+  connect();
+
+  return () => {
+    closed = true;
+    if (retry) {
+      clearTimeout(retry);
+    }
+    socket.close();
+  };
+}
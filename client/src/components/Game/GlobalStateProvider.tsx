@@ -32,6 +32,9 @@ interface Output {
 interface OutputCase {
   expected: string;
   actual: string;
+  // passed, failed, error, timeout, missing or skipped
+  status?: string;
+  elapsedMicros?: number;
 }
 
 type State = {
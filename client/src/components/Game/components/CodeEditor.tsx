@@ -2,14 +2,22 @@ import { useRef, useState } from "react";
 import { Editor } from "@monaco-editor/react";
 import LanguageSelector from "./LanguageSelector";
 import { Language, LANGUAGE_VERSIONS } from "../constants";
-import { Button } from "@chakra-ui/react";
+import { Button, Checkbox } from "@chakra-ui/react";
 import { useGlobalDispatch, useGlobalState } from "../GlobalStateProvider";
-import { queryAPIPost } from "../../../api.ts";
+import { queryAPI, queryAPIPost } from "../../../api";
 import { Store } from "react-notifications-component";
 import "react-notifications-component/dist/theme.css";
-import { queryAPI } from "../../../api";
 import { useUser } from "@clerk/clerk-react";
 
+// polling for a queued run starts after this delay and doubles up to the max
+const POLL_DELAY_MS = 250;
+const MAX_POLL_DELAY_MS = 2000;
+// a run still not finished after this long is reported as failed
+const MAX_POLL_MS = 60000;
+
+const sleep = (ms: number) =>
+  new Promise((resolve) => setTimeout(resolve, ms));
+
 // contains logic for code editor, including run and submit
 export default function CodeEditor({
   onFinish,
@@ -19,6 +27,8 @@ export default function CodeEditor({
   const editorRef = useRef();
   const [value, setValue] = useState("");
   const [tempScore, setTempScore] = useState("");
+  // stop running tests after the first one that does not pass
+  const [failFast, setFailFast] = useState(false);
   const state = useGlobalState();
   const dispatch = useGlobalDispatch();
   const user = useUser().user;
@@ -53,8 +63,31 @@ export default function CodeEditor({
       version: LANGUAGE_VERSIONS[state.language],
       name: state.problem.name,
       code: value,
+      failFast: failFast,
     };
-    const response = await queryAPIPost("runcode", body);
+    let response = await queryAPIPost("runcode", body);
+    // runs are queued on the server, long-poll until the result is ready.
+    // the server holds each poll open for a while, a reply that comes back
+    // early waits out a growing delay before the next poll
+    const deadline = Date.now() + MAX_POLL_MS;
+    let delay = POLL_DELAY_MS;
+    let polledAt = 0;
+    while (
+      response.response_type === "queued" ||
+      response.response_type === "pending"
+    ) {
+      if (Date.now() >= deadline) {
+        response = {
+          response_type: "failure",
+          error: "Your code is still waiting to run, please try again.",
+        };
+        break;
+      }
+      await sleep(Math.max(0, polledAt + delay - Date.now()));
+      delay = Math.min(delay * 2, MAX_POLL_DELAY_MS);
+      polledAt = Date.now();
+      response = await queryAPI("runresult", { jobID: response.jobID });
+    }
 
     if (response.response_type === "success") {
       // show a success notification with number of cases passed
@@ -187,6 +220,14 @@ export default function CodeEditor({
         />
       </div>
       <div className="flex flex-row gap-2 justify-end pr-4">
+        <Checkbox
+          size={"sm"}
+          textColor="white"
+          isChecked={failFast}
+          onChange={(e) => setFailFast(e.target.checked)}
+        >
+          Stop at first failure
+        </Checkbox>
         <Button size={"sm"} paddingX={4} onClick={runCode}>
           Run
         </Button>
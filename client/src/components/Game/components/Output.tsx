@@ -43,6 +43,18 @@ export default function Output() {
       }
     }
 
+    // get status and run time of each test case, e.g. "passed in 0.12 ms"
+    function getStatus(index: number) {
+      const output = Object.values(state.output)[index];
+      if (!output?.status) {
+        return "";
+      }
+      if (output.elapsedMicros === undefined || output.elapsedMicros === 0) {
+        return output.status;
+      }
+      return `${output.status} in ${(output.elapsedMicros / 1000).toFixed(2)} ms`;
+    }
+
     // get standard output, if applicable
     function getStdOutput(index: number) {
       const stdOutput = state.stdOutput;
@@ -104,7 +116,7 @@ export default function Output() {
         {/* Output Section */}
         <div className="flex flex-col">
           <p className="font-montserrat text-xs font-semibold pb-1 text-gray-400">
-            Output
+            Output {getStatus(index) && `(${getStatus(index)})`}
           </p>
           <div className="flex flex-col pb-2">
             <div className="flex flex-col p-3 bg-zinc-700 rounded-lg">
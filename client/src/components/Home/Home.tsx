@@ -24,18 +24,29 @@ export default function Home() {
   // function to check if a user exists in database using UserList endpoint
   async function checkIfUserExists(username: string) {
     try {
-      const response = await queryAPI("UserList", {});
-      if (response.response_type === "success") {
-        const users = response.data;
-        const userExists = users.some(
+      // UserList is paged, so read pages until the name is found or none are left
+      let cursor: string | undefined = undefined;
+      do {
+        const params: Record<string, string> = {
+          fields: "displayName",
+          limit: "500",
+        };
+        if (cursor) {
+          params.cursor = cursor;
+        }
+        const response = await queryAPI("UserList", params);
+        if (response.response_type !== "success") {
+          return false;
+        }
+        const userExists = response.data.some(
           (user: any) => user.displayName === username
         );
         if (userExists) {
           return true;
         }
-      } else {
-        return false;
-      }
+        cursor = response.nextCursor ?? undefined;
+      } while (cursor);
+      return false;
     } catch (error) {
       console.error("Error checking if user exists:", error);
       return false;
@@ -56,24 +56,25 @@ export default function PastCode() {
     fetchProblemNames();
   }, [submissions]);
 
-  // use UserInfo endpoint to get user stats and code
+  // use UserSubmissions endpoint to get the user's best code per problem
   useEffect(() => {
     const fetchUserInfo = async () => {
       try {
         if (!user?.id) return;
 
-        const response = await queryAPI("UserInfo", { userID: user.id });
+        const response = await queryAPI("UserSubmissions", {
+          userID: user.id,
+          limit: "100",
+        });
         if (response.response_type === "success") {
-          const codeData = response.data.code || {};
-
-          const parsedSubmissions: CodeSubmission[] = Object.entries(
-            codeData
-          ).map(([problemKey, submission]) => ({
-            problemName: problemKey.replace("problem", ""),
-            code: (submission as any).code,
-            date: (submission as any).date,
-            score: (submission as any).score,
-          }));
+          const parsedSubmissions: CodeSubmission[] = response.data.map(
+            (submission: any) => ({
+              problemName: submission.problemID,
+              code: submission.code,
+              date: submission.date,
+              score: submission.score,
+            })
+          );
 
           setSubmissions(parsedSubmissions);
         } else {
@@ -22,6 +22,7 @@ export default function Stats() {
     userID: string;
   } | null>(null);
   const [leaderboard, setLeaderboard] = useState<User[]>([]);
+  const [rank, setRank] = useState<number | null>(null);
   const [loadingLeaderboard, setLoadingLeaderboard] = useState(true);
   const [loadingStats, setLoadingStats] = useState(true);
 
@@ -54,6 +55,11 @@ export default function Stats() {
       } else {
         console.error("Failed to fetch user stats:", response);
       }
+      // the leaderboard only holds the top page, so ask for this user's place directly
+      const rankResponse = await queryAPI("UserRank", { userID: user.id });
+      if (rankResponse.response_type === "success") {
+        setRank(rankResponse.data.rank);
+      }
     } catch (error) {
       console.error("Error fetching user stats:", error);
     } finally {
@@ -138,7 +144,7 @@ export default function Stats() {
             </p>
             <p>
               <b className="font-bold text-gray-400">Leaderboard Rank: </b>
-              {leaderboard.findIndex((user) => user.userID === userStats?.userID) + 1}
+              {rank ?? "-"}
             </p>
             <p>
               <b className="font-bold text-gray-400">Total Wins: </b>
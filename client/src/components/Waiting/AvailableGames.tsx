@@ -1,7 +1,7 @@
 import GamePanel from "./GamePanel";
 import CreateGame from "./CreateGame";
-import { useEffect, useRef, useState } from "react";
-import { queryAPI } from "../../api";
+import { useEffect, useState } from "react";
+import { queryAPI, subscribeRooms } from "../../api";
 
 // shows all available games
 export default function AvailableGames() {
@@ -20,82 +20,67 @@ export default function AvailableGames() {
       };
     };
   }> | null>(null);
-  const [isActive, setIsActive] = useState(true);
-  const timeoutRef = useRef<ReturnType<typeof setTimeout> | null>(null);
-  const intervalRef = useRef<ReturnType<typeof setInterval> | null>(null);
 
-  // Fetch room data from the backend
-  const fetchRooms = async () => {
-    try {
-      const response = await queryAPI("RoomList");
-      if (response.response_type === "success") {
-        // Filter out rooms with zero players
-        const validRooms = response.data.filter((room: any) => {
-          if (
-            !room.players ||
-            Object.keys(room.players).length === 0 ||
-            (Object.keys(room.players).length === 2 &&
-              new Date(room.timeCreated).getTime() <
-                new Date().getTime() - 21600000)
-          ) {
-            // Call RoomDel to delete the room with zero players
-            queryAPI("RoomDel", { roomID: room.roomID })
-              .then(() => console.log(`Room ${room.roomID} deleted.`))
-              .catch((err) =>
-                console.error(`Failed to delete room ${room.roomID}:`, err)
-              );
-            return false; // Exclude this room from the final list
-          }
-          return true; // Include the room
-        });
-
-        setRooms(validRooms);
-        console.log("Rooms loaded:", response.data);
-      } else {
-        console.error("Failed to fetch rooms:", response);
+  // Rooms with zero players, or full rooms older than 6 hours, are abandoned:
+  // delete them and leave them out of the list
+  const removeStaleRooms = (allRooms: any[]) =>
+    allRooms.filter((room: any) => {
+      if (
+        !room.players ||
+        Object.keys(room.players).length === 0 ||
+        (Object.keys(room.players).length === 2 &&
+          new Date(room.timeCreated).getTime() <
+            new Date().getTime() - 21600000)
+      ) {
+        // Call RoomDel to delete the room with zero players
+        queryAPI("RoomDel", { roomID: room.roomID })
+          .then(() => console.log(`Room ${room.roomID} deleted.`))
+          .catch((err) =>
+            console.error(`Failed to delete room ${room.roomID}:`, err)
+          );
+        return false; // Exclude this room from the final list
       }
-    } catch (error) {
-      console.error("Error connecting to backend:", error);
-    }
-  };
+      return true; // Include the room
+    });
 
-  // Use useEffect to load room data on component mount and set up interval
+  // Subscribe to the lobby on mount: the server sends every room once, then
+  // pushes each change, so there is no need to poll RoomList
   useEffect(() => {
-    fetchRooms();
-
-    const handleUserActivity = () => {
-      setIsActive(true);
-      if (timeoutRef.current) {
-        clearTimeout(timeoutRef.current);
-      }
-      timeoutRef.current = setTimeout(() => {
-        setIsActive(false);
-      }, 60000); // 1 minute of inactivity
-    };
-
-    const events = ["mousemove", "keydown", "scroll", "click"];
-    events.forEach((event) =>
-      window.addEventListener(event, handleUserActivity)
-    );
-
-    intervalRef.current = setInterval(() => {
-      if (isActive) {
-        fetchRooms();
-      }
-    }, 5000); // Refresh every 5 seconds
-
-    return () => {
-      if (intervalRef.current) {
-        clearInterval(intervalRef.current);
-      }
-      if (timeoutRef.current) {
-        clearTimeout(timeoutRef.current);
+    const unsubscribe = subscribeRooms("lobby", (message) => {
+      if (message.type === "snapshot") {
+        setRooms(removeStaleRooms(message.rooms));
+        console.log("Rooms loaded:", message.rooms);
+      } else if (message.type === "room_updated") {
+        setRooms((previous) => {
+          const current = previous ?? [];
+          const existing = current.find(
+            (room) => room.roomID === message.roomID
+          );
+          if (!existing) {
+            return [...current, message.delta];
+          }
+          // merge the changed fields, keeping players not in the change
+          const merged = {
+            ...existing,
+            ...message.delta,
+            players: { ...existing.players, ...message.delta.players },
+          };
+          return current.map((room) =>
+            room.roomID === message.roomID ? merged : room
+          );
+        });
+      } else if (message.type === "room_deleted") {
+        setRooms((previous) =>
+          previous
+            ? previous.filter((room) => room.roomID !== message.roomID)
+            : previous
+        );
+      } else {
+        console.error("Failed to subscribe to rooms:", message);
       }
-      events.forEach((event) =>
-        window.removeEventListener(event, handleUserActivity)
-      );
-    };
-  }, [isActive]);
+    });
+    return unsubscribe;
+  }, []);
 
   // helper function to format time in minutes and seconds
   function formatTime(time: number) {
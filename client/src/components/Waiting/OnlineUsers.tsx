@@ -16,13 +16,27 @@ export default function OnlineUsers() {
   // get a list of all users using UserList endpoint
   const fetchUsers = async () => {
     try {
-      const response = await queryAPI("UserList");
-      if (response.response_type === "success") {
-        const users = response.data as User[];
-        setInGameUsers(users);
-      } else {
-        console.error("Failed to fetch users:", response.error);
-      }
+      // UserList is paged, so read pages until none are left
+      const users: User[] = [];
+      let cursor: string | undefined = undefined;
+      do {
+        // only the fields shown, not whole user documents
+        const params: Record<string, string> = {
+          fields: "userID,displayName,email",
+          limit: "500",
+        };
+        if (cursor) {
+          params.cursor = cursor;
+        }
+        const response = await queryAPI("UserList", params);
+        if (response.response_type !== "success") {
+          console.error("Failed to fetch users:", response.error);
+          break;
+        }
+        users.push(...(response.data as User[]));
+        cursor = response.nextCursor ?? undefined;
+      } while (cursor);
+      setInGameUsers(users);
     } catch (error) {
       console.error("Error fetching users:", error);
     } finally {
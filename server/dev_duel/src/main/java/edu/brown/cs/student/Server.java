@@ -1,29 +1,51 @@
 package edu.brown.cs.student;
 
-import static spark.Spark.after;
+import static spark.Spark.before;
 
 import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.Logger;
+import edu.brown.cs.student.code_engine.CachedProblem;
+import edu.brown.cs.student.code_engine.CircuitBreaker;
+import edu.brown.cs.student.code_engine.HarnessTemplateCache;
 import edu.brown.cs.student.code_engine.ICodeEngineApi;
+import edu.brown.cs.student.code_engine.LocalProcessCodeEngine;
 import edu.brown.cs.student.code_engine.PistonCodeEngineApi;
+import edu.brown.cs.student.code_engine.PistonTransport;
+import edu.brown.cs.student.code_engine.ResultCachingCodeEngine;
+import edu.brown.cs.student.code_engine.SubmissionQueue;
+import edu.brown.cs.student.code_engine.TokenBucket;
 import edu.brown.cs.student.endpoints.CodeHandler;
 import edu.brown.cs.student.endpoints.GetProblemsHandler;
+import edu.brown.cs.student.endpoints.MetricsHandler;
 import edu.brown.cs.student.endpoints.RoomDel;
 import edu.brown.cs.student.endpoints.RoomInfo;
 import edu.brown.cs.student.endpoints.RoomList;
 import edu.brown.cs.student.endpoints.RoomSet;
+import edu.brown.cs.student.endpoints.RoomSocket;
+import edu.brown.cs.student.endpoints.RunResultHandler;
 import edu.brown.cs.student.endpoints.RuntimesHandler;
 import edu.brown.cs.student.endpoints.UserInfo;
 import edu.brown.cs.student.endpoints.UserLeaderboard;
 import edu.brown.cs.student.endpoints.UserList;
+import edu.brown.cs.student.endpoints.UserRank;
 import edu.brown.cs.student.endpoints.UserSet;
+import edu.brown.cs.student.endpoints.UserSubmissions;
 import edu.brown.cs.student.endpoints.UserUpdateHist;
 import edu.brown.cs.student.storage.CacheStorage;
 import edu.brown.cs.student.storage.FirestoreUtil;
 import edu.brown.cs.student.storage.IStorage;
-import edu.brown.cs.student.storage.MockStorage;
+import edu.brown.cs.student.storage.InMemoryStorage;
+import edu.brown.cs.student.storage.LeaderboardIndex;
+import edu.brown.cs.student.storage.RoomRegistry;
+import edu.brown.cs.student.storage.Submissions;
+import edu.brown.cs.student.storage.WriteBehindStorage;
 import edu.brown.cs.student.util.AuthMiddleware;
-import java.util.Map;
+import edu.brown.cs.student.util.JsonUtil;
+import io.github.cdimascio.dotenv.Dotenv;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import org.slf4j.LoggerFactory;
 import spark.Spark;
 
@@ -33,46 +55,141 @@ public class Server {
     // takes care of the console logging noise
     Logger root = (Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME);
     root.setLevel(Level.WARN);
+    // build the json adapters used on every request before the first request arrives
+    JsonUtil.prewarm();
 
     int port = 3232;
     Spark.port(port);
 
+    // websocket routes must be mapped before any other route
+    RoomRegistry roomRegistry = new RoomRegistry();
+    Spark.webSocket("/ws/rooms", new RoomSocket(roomRegistry));
+
     // apply the authentication middle ware
     AuthMiddleware.apply();
-    // Allow full access to the API
-    after(
+    // Allow full access to the API. Set before the route runs, since streamed responses are
+    // already committed when it returns.
+    before(
         (request, response) -> {
           response.header("Access-Control-Allow-Origin", "*");
           response.header("Access-Control-Allow-Methods", "*");
         });
 
     IStorage firestoreUtils;
-    IStorage mockStorage;
     ICodeEngineApi pistonApIDatasource;
-    CacheStorage<Map<String, String>> problemCache;
+    SubmissionQueue submissionQueue;
+    PistonCodeEngineApi piston = null;
+    CacheStorage<CachedProblem> problemCache;
     try {
-      firestoreUtils = new FirestoreUtil();
-      mockStorage = new MockStorage();
-      problemCache = new CacheStorage<>(50, 30);
-      pistonApIDatasource = new PistonCodeEngineApi(problemCache);
+      Dotenv env = Dotenv.configure().ignoreIfMissing().load();
+      // STORAGE=memory keeps everything in this jvm, with the problems of data/problems.json, so
+      // the server runs and can be load tested without firestore
+      if (env.get("STORAGE", "firestore").equalsIgnoreCase("memory")) {
+        InMemoryStorage memory = new InMemoryStorage();
+        memory.loadProblems("data/problems.json");
+        firestoreUtils = memory;
+      } else {
+        FirestoreUtil firestore = new FirestoreUtil();
+        // every problem is held in memory and reloaded every 10 minutes
+        firestore.getProblemCatalog().startRefreshing(10, TimeUnit.MINUTES);
+        firestoreUtils = firestore;
+      }
+      // ./run --migrate-submissions moves the code history out of the user documents, then exits
+      if (Arrays.asList(args).contains("--migrate-submissions")) {
+        int moved = Submissions.migrate(firestoreUtils);
+        System.out.println("Moved " + moved + " submissions to " + Submissions.COLLECTION);
+        System.exit(0);
+      }
+      // users ordered by wins, loaded once and kept current by UserSet and UserUpdateHist
+      LeaderboardIndex leaderboard = LeaderboardIndex.load(firestoreUtils);
+      // rooms are pushed to websocket clients from memory after this one read
+      roomRegistry.load(firestoreUtils);
+      // score updates during a duel are merged per room and written in batches
+      WriteBehindStorage roomWrites = new WriteBehindStorage(firestoreUtils, 250, 100);
+      Runtime.getRuntime().addShutdownHook(new Thread(roomWrites::close, "write-behind-close"));
+      // evicted problems are reloaded from firestore instead of failing the run, with their test
+      // harnesses built as they are loaded
+      IStorage problemSource = firestoreUtils;
+      HarnessTemplateCache harnessTemplates = HarnessTemplateCache.load("data/codemap.json");
+      problemCache =
+          new CacheStorage<>(
+              50,
+              30,
+              10,
+              key -> harnessTemplates.warm(CachedProblem.load(problemSource, key)),
+              Executors.newSingleThreadExecutor(
+                  runnable -> {
+                    Thread thread = new Thread(runnable, "problem-cache-refresh");
+                    thread.setDaemon(true);
+                    return thread;
+                  }));
+      // CODE_ENGINE=local runs submissions on this machine instead of the piston api. It is meant
+      // for development: the programs can still read any file the server can.
+      if (env.get("CODE_ENGINE", "piston").equalsIgnoreCase("local")) {
+        pistonApIDatasource = new LocalProcessCodeEngine(problemCache);
+      } else {
+        // one keep-alive client for every piston call, PISTON_URL points it at a self-hosted
+        // instance and the timeouts are given in seconds
+        PistonTransport pistonTransport =
+            new PistonTransport(
+                env.get("PISTON_URL", PistonTransport.DEFAULT_BASE_URL),
+                Duration.ofSeconds(
+                    Long.parseLong(
+                        env.get(
+                            "PISTON_CONNECT_TIMEOUT_SECONDS",
+                            String.valueOf(PistonTransport.DEFAULT_CONNECT_TIMEOUT.toSeconds())))),
+                Duration.ofSeconds(
+                    Long.parseLong(
+                        env.get(
+                            "PISTON_REQUEST_TIMEOUT_SECONDS",
+                            String.valueOf(PistonTransport.DEFAULT_REQUEST_TIMEOUT.toSeconds())))));
+        // every run shares one rate limit, PISTON_REQUESTS_PER_SECOND is the quota of the instance
+        double requestsPerSecond =
+            Double.parseDouble(
+                env.get(
+                    "PISTON_REQUESTS_PER_SECOND",
+                    String.valueOf(PistonCodeEngineApi.DEFAULT_REQUESTS_PER_SECOND)));
+        piston =
+            new PistonCodeEngineApi(
+                problemCache,
+                pistonTransport,
+                new TokenBucket(
+                    requestsPerSecond,
+                    (int) Math.max(1, requestsPerSecond),
+                    PistonCodeEngineApi.DEFAULT_RATE_LIMIT_QUEUE),
+                new CircuitBreaker(
+                    PistonCodeEngineApi.DEFAULT_FAILURE_THRESHOLD,
+                    PistonCodeEngineApi.DEFAULT_OPEN_MILLIS));
+        pistonApIDatasource = piston;
+      }
+      // identical resubmissions are answered from the cache instead of being run again
+      pistonApIDatasource = new ResultCachingCodeEngine(pistonApIDatasource, problemCache, 500, 10);
+      // a handful of workers keep the engine busy; everything past the queue is turned away
+      submissionQueue = new SubmissionQueue(pistonApIDatasource, 8, 64);
 
       //
-      Spark.get("RoomSet", new RoomSet(firestoreUtils));
-      Spark.get("RoomInfo", new RoomInfo(firestoreUtils));
-      Spark.get("RoomDel", new RoomDel(firestoreUtils));
-      Spark.get("RoomList", new RoomList(firestoreUtils));
-      Spark.get("UserSet", new UserSet(firestoreUtils));
-      Spark.get("UserUpdateHist", new UserUpdateHist(firestoreUtils));
+      Spark.get("RoomSet", new RoomSet(roomWrites, roomRegistry));
+      Spark.get("RoomInfo", new RoomInfo(roomWrites));
+      Spark.get("RoomDel", new RoomDel(roomWrites, roomRegistry));
+      Spark.get("RoomList", new RoomList(roomWrites));
+      Spark.get("UserSet", new UserSet(firestoreUtils, leaderboard));
+      Spark.get("UserUpdateHist", new UserUpdateHist(firestoreUtils, leaderboard));
       Spark.get("UserInfo", new UserInfo(firestoreUtils));
-      Spark.get("UserLeaderboard", new UserLeaderboard(firestoreUtils));
+      Spark.get("UserLeaderboard", new UserLeaderboard(leaderboard));
+      Spark.get("UserRank", new UserRank(leaderboard));
       Spark.get("UserList", new UserList(firestoreUtils));
+      Spark.get("UserSubmissions", new UserSubmissions(firestoreUtils));
 
       // piston endpoints
       Spark.get("runtimes", new RuntimesHandler(pistonApIDatasource));
-      Spark.post("runcode", new CodeHandler(pistonApIDatasource));
+      Spark.post("runcode", new CodeHandler(submissionQueue));
+      Spark.get("runresult", new RunResultHandler(submissionQueue));
 
       // problems endpoints
-      Spark.get("getproblem", new GetProblemsHandler(firestoreUtils, problemCache));
+      Spark.get(
+          "getproblem", new GetProblemsHandler(firestoreUtils, problemCache, harnessTemplates));
+
+      Spark.get("metrics", new MetricsHandler(problemCache, submissionQueue, roomWrites, piston));
 
       Spark.notFound(
           (request, response) -> {
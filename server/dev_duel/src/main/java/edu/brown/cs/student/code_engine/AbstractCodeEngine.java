@@ -0,0 +1,578 @@
+package edu.brown.cs.student.code_engine;
+
+import com.squareup.moshi.Types;
+import edu.brown.cs.student.storage.CacheStorage;
+import edu.brown.cs.student.util.AdapterRecords.ApiResponseRecord;
+import edu.brown.cs.student.util.AdapterRecords.CodeRecord;
+import edu.brown.cs.student.util.AdapterRecords.TestRecord;
+import edu.brown.cs.student.util.JsonUtil;
+import edu.brown.cs.student.util.TypeResolverUtil;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.math.RoundingMode;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * AbstractCodeEngine holds everything a code engine needs except the execution itself: it splices
+ * the cached tests of a problem into the submitted code, hands the resulting program to {@link
+ * #execute(CodeRecord)} and scores the printed results against the expected values. Engines only
+ * decide where the program runs.
+ *
+ * <p>The harness spliced in is rendered from the templates in data/codemap.json and compiled once
+ * per problem, language and shard by the {@link HarnessTemplateCache}. It runs every test on its
+ * own under a time limit, catching what the call throws, and prints one result frame per test as
+ * soon as the test ends (see {@link ResultFrameParser}), so a failing test, a hang or a crash part
+ * way through costs only the tests it affects. Runs with failFast set stop at the first test that
+ * does not pass: the harness stops after a test that threw or timed out, and engines that watch the
+ * run while it goes stop it at the first wrong answer too.
+ *
+ * <p>Problems whose tests would not fit a single run are split into shards of consecutive tests,
+ * each run as its own program at the same time as the others, and the results are merged back in
+ * test order. How many shards a problem gets follows from how long its tests took in past runs (see
+ * {@link RuntimeEstimate}); shards are bounded per submission and across the engine, and a shard
+ * that finds no free slot runs after the others on the submission's own thread.
+ */
+public abstract class AbstractCodeEngine implements ICodeEngineApi {
+
+  /** Time a single test may take by default before the harness gives up on it. */
+  public static final long DEFAULT_TEST_TIMEOUT_MILLIS = 2_000;
+
+  /** Time a shard of tests should take by default, well inside the engines' run limits. */
+  public static final long DEFAULT_SHARD_BUDGET_MILLIS = 3_000;
+
+  public static final int DEFAULT_MAX_SHARDS_PER_RUN = 4;
+  public static final int DEFAULT_MAX_CONCURRENT_SHARDS = 8;
+
+  private static final Pattern CLASS_PATTERN = Pattern.compile("public\\s+class\\s+(\\w+)");
+
+  protected final CacheStorage<CachedProblem> cache;
+  protected final long testTimeoutMillis;
+  private final long shardBudgetMillis;
+  private final int maxShardsPerRun;
+  // shards beyond the first of each run; the first runs on the submission's own thread
+  private final Semaphore shardPermits;
+  private final ExecutorService shardExecutor;
+  private final String helperCodesPath = "data/codemap.json";
+  protected final Map<String, Map<String, String>>
+      helperCodeMap; // contains some predefined language specific code string
+  private final HarnessTemplateCache harnessTemplates;
+
+  protected AbstractCodeEngine(CacheStorage<CachedProblem> cache) {
+    this(cache, DEFAULT_TEST_TIMEOUT_MILLIS);
+  }
+
+  /**
+   * @param cache problem cache holding the tests of each problem
+   * @param testTimeoutMillis time a single test may take before the harness gives up on it
+   */
+  protected AbstractCodeEngine(CacheStorage<CachedProblem> cache, long testTimeoutMillis) {
+    this(
+        cache,
+        testTimeoutMillis,
+        DEFAULT_SHARD_BUDGET_MILLIS,
+        DEFAULT_MAX_SHARDS_PER_RUN,
+        DEFAULT_MAX_CONCURRENT_SHARDS);
+  }
+
+  /**
+   * @param cache problem cache holding the tests of each problem
+   * @param testTimeoutMillis time a single test may take before the harness gives up on it
+   * @param shardBudgetMillis time a shard of tests should take; tests expected to take longer
+   *     together are split into more shards
+   * @param maxShardsPerRun most shards one submission is split into
+   * @param maxConcurrentShards most extra shards running at the same time across all submissions
+   */
+  protected AbstractCodeEngine(
+      CacheStorage<CachedProblem> cache,
+      long testTimeoutMillis,
+      long shardBudgetMillis,
+      int maxShardsPerRun,
+      int maxConcurrentShards) {
+    this.cache = cache;
+    this.testTimeoutMillis = testTimeoutMillis;
+    this.shardBudgetMillis = shardBudgetMillis;
+    this.maxShardsPerRun = maxShardsPerRun;
+    this.shardPermits = new Semaphore(maxConcurrentShards);
+    this.shardExecutor =
+        Executors.newCachedThreadPool(
+            runnable -> {
+              Thread thread = new Thread(runnable, "code-engine-shard");
+              thread.setDaemon(true);
+              return thread;
+            });
+    this.helperCodeMap = JsonUtil.readJsonToMap(this.helperCodesPath);
+    this.harnessTemplates = new HarnessTemplateCache(this.helperCodeMap);
+  }
+
+  /**
+   * Runs code against the cached tests of its problem and scores the results
+   *
+   * @return
+   */
+  @Override
+  public Map<String, Object> runCode(CodeRecord problem) {
+    String key = "Problems/" + problem.name();
+
+    try {
+      CachedProblem cachedProblem = this.cache.get(key);
+      if (cachedProblem == null) {
+        System.out.println("__TESTS_NOT_FOUND_CACHE_ERR__: code engine timeout");
+        return JsonUtil.generateErrorMap(
+            "Code engine timeout: Make sure you aren't running your own code...");
+      }
+      Map<String, Object> responseMap = new HashMap<>();
+
+      //      // TestRecord prefliRecordTest = testsRecordList.get(0);
+      //      ApiResponseRecord preflightResponse = this.preFlightCode(problem,
+      // testsRecordList.get(0));
+      //      // check if there's error due to malformed code
+      //      if (preflightResponse.message() != null) {
+      //        System.err.println("__PREFLIGHT_RUN_ERR__: " + preflightResponse.message());
+      //        return JsonUtil.generateErrorMap(preflightResponse.message());
+      //      }
+      //      // check if code run with error
+      //      String stderr = preflightResponse.run().stderr();
+      //      System.out.println("STDERR: " + stderr);
+      //      if (codeRunWithError(stderr)) {
+      //        String output = preflightResponse.run().stderr();
+      //        responseMap.put("response_type", "bug");
+      //        responseMap.put("output", toStdIOList(output));
+      //        return responseMap;
+      //      }
+      // Time to run code with
+
+      int testCount = cachedProblem.tests().size();
+      RuntimeEstimate estimate = cachedProblem.runtimeEstimate(problem.language());
+      int shardCount =
+          estimate.shardCount(testCount, this.shardBudgetMillis * 1000, this.maxShardsPerRun);
+      // once a test of a fail-fast run does not pass, every shard stops, not just its own
+      AtomicBoolean failed = new AtomicBoolean();
+      Predicate<TestResult> stopAfter =
+          result -> {
+            if (problem.failFast() && !passes(cachedProblem, result)) {
+              failed.set(true);
+            }
+            return failed.get();
+          };
+      List<ShardRun> runs = this.runShards(problem, cachedProblem, shardCount, stopAfter);
+      // check for any malformed code json error
+      for (ShardRun run : runs) {
+        if (run.response().message() != null) {
+          System.err.println(run.response().message());
+          return JsonUtil.generateErrorMap("Internal server error.");
+        }
+      }
+
+      List<String> outputList = new ArrayList<>();
+      List<TestResult> results = new ArrayList<>(testCount);
+      int frames = 0;
+      boolean runWithError = false;
+      for (ShardRun run : runs) {
+        outputList.addAll(run.parsed().output());
+        for (TestResult result : run.parsed().results().subList(run.from(), run.to())) {
+          // a shard stopped by a fail-fast test never tried the rest of its tests, wherever in the
+          // test order that test was, so they are skipped rather than lost
+          boolean skipped = run.stopped() && result.status().equals(TestResult.MISSING);
+          results.add(skipped ? TestResult.skipped(result.index()) : result);
+        }
+        frames += run.parsed().frames();
+        runWithError |= codeRunWithError(run.response().run().stderr());
+      }
+      // errors before the first result mean the tests never ran, e.g. the code did not compile
+      if (frames == 0 && runWithError) {
+        // every shard hit the same error, show it once
+        outputList = runs.get(0).parsed().output();
+        System.err.println("__TEST_RUN_HAS_ERROR__:" + outputList);
+        responseMap.put("response_type", "bug");
+        responseMap.put("output", outputList);
+        return responseMap;
+      }
+      recordRuntimes(estimate, runs, failed.get());
+      Map<String, Object> testValidationMap =
+          scoreResults(cachedProblem, results, problem.failFast());
+      responseMap.put("tests", testValidationMap.get("tests"));
+      responseMap.put("score", testValidationMap.get("score"));
+      responseMap.put("output", outputList);
+      responseMap.put("response_type", "success");
+      return responseMap;
+    } catch (Exception e) {
+      System.out.println("__RUNCODE_ERR__: " + e.getMessage());
+      e.printStackTrace();
+      return JsonUtil.generateErrorMap("Internal server error.");
+    }
+  }
+
+  /**
+   * Runs the tests split into shards of consecutive tests. Shards that get one of the engine's
+   * shard slots run in parallel; the first shard, and any that find no free slot, run on the
+   * calling thread.
+   *
+   * @return the run of each shard, in test order
+   */
+  private List<ShardRun> runShards(
+      CodeRecord problem,
+      CachedProblem cachedProblem,
+      int shardCount,
+      Predicate<TestResult> stopAfter) {
+    int testCount = cachedProblem.tests().size();
+    List<CompletableFuture<ShardRun>> shards = new ArrayList<>();
+    for (int i = 0; i < shardCount; i++) {
+      int from = i * testCount / shardCount;
+      int to = (i + 1) * testCount / shardCount;
+      if (i > 0 && this.shardPermits.tryAcquire()) {
+        shards.add(
+            CompletableFuture.supplyAsync(
+                () -> {
+                  try {
+                    return this.runShard(problem, cachedProblem, from, to, stopAfter);
+                  } finally {
+                    this.shardPermits.release();
+                  }
+                },
+                this.shardExecutor));
+      } else {
+        shards.add(null);
+      }
+    }
+    List<ShardRun> runs = new ArrayList<>();
+    for (int i = 0; i < shardCount; i++) {
+      int from = i * testCount / shardCount;
+      int to = (i + 1) * testCount / shardCount;
+      CompletableFuture<ShardRun> shard = shards.get(i);
+      runs.add(
+          shard == null
+              ? this.runShard(problem, cachedProblem, from, to, stopAfter)
+              : shard.join());
+    }
+    return runs;
+  }
+
+  /** Runs the tests from index from up to index to as one program. */
+  private ShardRun runShard(
+      CodeRecord problem,
+      CachedProblem cachedProblem,
+      int from,
+      int to,
+      Predicate<TestResult> stopAfter) {
+    String nonce = ResultFrameParser.newNonce();
+    ResultFrameParser frames =
+        new ResultFrameParser(nonce, cachedProblem.tests().size(), stopAfter);
+    long start = System.nanoTime();
+    ApiResponseRecord response =
+        this.runCodeWithTest(problem, cachedProblem, from, to, nonce, frames);
+    long wallMicros = (System.nanoTime() - start) / 1000;
+    return new ShardRun(from, to, response, frames.finish(), frames.stopped(), wallMicros);
+  }
+
+  /**
+   * Feeds how long the tests and the runs around them took into the estimate the next submissions
+   * are sharded with. A run that ended while a test was still going is counted as that test having
+   * taken the rest of the run, so suites that outgrow a run are split further next time.
+   */
+  private static void recordRuntimes(
+      RuntimeEstimate estimate, List<ShardRun> runs, boolean stoppedEarly) {
+    for (ShardRun run : runs) {
+      if (run.parsed().frames() == 0) {
+        continue;
+      }
+      long testMicros = 0;
+      boolean cutOff = false;
+      for (TestResult result : run.parsed().results().subList(run.from(), run.to())) {
+        if (result.status().equals(TestResult.MISSING)) {
+          cutOff = true;
+          continue;
+        }
+        estimate.recordTest(result.elapsedMicros());
+        testMicros += result.elapsedMicros();
+      }
+      if (!cutOff) {
+        estimate.recordOverhead(run.wallMicros() - testMicros);
+      } else if (!stoppedEarly) {
+        estimate.recordTest(run.wallMicros() - testMicros);
+      }
+    }
+  }
+
+  /**
+   * Split typed code on the last closing brace. This creates room to insert the last
+   *
+   * @param code
+   * @return
+   */
+  protected List<String> splitCodeOnClosingBrace(String code) {
+    String strippedCode = code.strip();
+    return List.of(strippedCode.substring(0, strippedCode.length() - 1), "}");
+  }
+
+  /**
+   * Process raw request payload into a form accepatable by piston api
+   *
+   * @param problem
+   * @param cachedProblem cache entry holding the tests of the problem
+   * @param from index of the first test to run
+   * @param to index after the last test to run
+   * @param nonce nonce the harness marks its result frames with
+   * @param frames parser the output of the run is fed into
+   * @return
+   */
+  protected ApiResponseRecord runCodeWithTest(
+      CodeRecord problem,
+      CachedProblem cachedProblem,
+      int from,
+      int to,
+      String nonce,
+      ResultFrameParser frames) {
+    // handle error later
+    // make api request payload map
+    Map<String, Object> apiPayloadMap = new HashMap<>();
+    apiPayloadMap.put("language", problem.language());
+    apiPayloadMap.put("version", problem.version());
+
+    // the tests only depend on the problem, language and shard, so they are compiled once
+    HarnessTemplate harness =
+        this.harnessTemplates.get(cachedProblem, problem.language(), from, to);
+    String userCode = problem.code() + "\n";
+    String className = "Solution";
+    // java tests go inside the submitted class, whose last brace the harness closes instead
+    if (problem.language().equals("java")) {
+      Matcher classMatcher = CLASS_PATTERN.matcher(problem.code());
+      className = classMatcher.find() ? classMatcher.group(1) : className;
+      userCode = this.splitCodeOnClosingBrace(userCode).get(0);
+    }
+    String codeToRun =
+        harness.assemble(userCode, nonce, className, this.testTimeoutMillis, problem.failFast());
+    return this.execute(
+        new CodeRecord(problem.name(), problem.language(), problem.version(), codeToRun), frames);
+  }
+
+  /**
+   * Runs a complete program and feeds what it printed into the frame parser, stdout followed by
+   * stderr. By default the output is fed once the run has ended; engines that can read the output
+   * while the program runs override this to stop the program as soon as the parser asks to.
+   *
+   * @param code record whose code field holds the program to run
+   * @param frames parser the output of the run is fed into
+   * @return record of the run with its stdout/stderr, or with a message if the run failed to start
+   */
+  protected ApiResponseRecord execute(CodeRecord code, ResultFrameParser frames) {
+    ApiResponseRecord response = this.execute(code);
+    if (response.run() != null && response.run().output() != null) {
+      frames.accept(response.run().output());
+    }
+    return response;
+  }
+
+  /**
+   * Runs a complete program, the submitted code with the tests spliced in.
+   *
+   * @param code record whose code field holds the program to run
+   * @return record of the run with its stdout/stderr, or with a message if the run failed to start
+   */
+  protected abstract ApiResponseRecord execute(CodeRecord code);
+
+  /**
+   * Check whether user code runs without any error. This checks whether the stderr field of the
+   * response's run free is empty.
+   *
+   * @param stderr
+   * @return
+   */
+  private boolean codeRunWithError(String stderr) {
+    return stderr != null && !stderr.isEmpty();
+  }
+
+  /**
+   * Compares the expected test results with the actual results. Each test is scored on its own: one
+   * that threw, timed out, was never reported or returned something unreadable scores nothing,
+   * without affecting the others. Every test reports its status, one of passed, failed, error,
+   * timeout, missing or skipped, and how long its call took.
+   *
+   * @param cachedProblem cache entry holding the tests, return type and expectExact flag
+   * @param results the result of each test, in test order
+   * @param failFast whether the run stopped at the first test that did not pass, so that the tests
+   *     missing after it were skipped rather than lost
+   * @return a map of score list of test results
+   */
+  private static Map<String, Object> scoreResults(
+      CachedProblem cachedProblem, List<TestResult> results, boolean failFast) {
+    List<TestRecord> testRecords = cachedProblem.tests();
+    int limit = testRecords.size();
+    int score = 0;
+    boolean stopped = false;
+    List<Map<String, Object>> toReturn = new ArrayList<>();
+    for (int i = 0; i < limit; i++) {
+      String expected = testRecords.get(i).expected();
+      TestResult result = results.get(i);
+      String status;
+      String actual;
+      if (result.status().equals(TestResult.SKIPPED)) {
+        status = TestResult.SKIPPED;
+        actual = "Skipped: another test did not pass";
+      } else if (result.status().equals(TestResult.MISSING)) {
+        status = stopped ? TestResult.SKIPPED : TestResult.MISSING;
+        actual =
+            stopped
+                ? "Skipped: an earlier test did not pass"
+                : "No result: the run ended before this test finished";
+      } else if (!result.ok()) {
+        status = result.status();
+        actual = result.text();
+      } else {
+        String[] compared = score(cachedProblem, i, result);
+        expected = compared[0];
+        actual = compared[1];
+        status = compared[2] == null ? "failed" : "passed";
+      }
+      if (status.equals("passed")) {
+        score++;
+      } else {
+        stopped |= failFast;
+      }
+      toReturn.add(
+          Map.of(
+              "actual", actual,
+              "expected", expected,
+              "status", status,
+              "elapsedMicros", result.elapsedMicros()));
+    }
+    String finalScore = score + "/" + testRecords.size();
+    return Map.of("score", finalScore, "tests", toReturn);
+  }
+
+  /**
+   * @param cachedProblem cache entry holding the tests
+   * @param result result of one of its tests
+   * @return whether the test returned the expected value
+   */
+  private static boolean passes(CachedProblem cachedProblem, TestResult result) {
+    return result.ok() && score(cachedProblem, result.index(), result)[2] != null;
+  }
+
+  /** Compares a returned value with the expected one, counting unreadable values as wrong. */
+  private static String[] score(CachedProblem cachedProblem, int index, TestResult result) {
+    String expected = cachedProblem.tests().get(index).expected();
+    try {
+      return compare(cachedProblem, expected, result.text());
+    } catch (Exception e) {
+      System.out.println("__TEST_RESULT_UNREADABLE_ERR__: test " + index + " " + e.getMessage());
+      return new String[] {expected, result.text(), null};
+    }
+  }
+
+  /**
+   * Compares one actual result with the expected one. Results are json, apart from strings, which
+   * are compared as they are.
+   *
+   * @return the expected and actual values as shown to the client, and a third element that is null
+   *     unless they match
+   */
+  private static String[] compare(CachedProblem cachedProblem, String expected, String actual)
+      throws Exception {
+    String returnType = cachedProblem.returnType();
+    boolean expectExact = cachedProblem.expectExact();
+    Type resolvedType = cachedProblem.resolvedType();
+    boolean passed = false;
+    if (expectExact) {
+      if (!returnType.equalsIgnoreCase("STRING")) {
+        expected = expected.replaceAll(" ", "");
+        actual = actual.replaceAll(" ", "");
+      }
+      actual = (returnType.equalsIgnoreCase("DOUBLE")) ? format(actual, 6).toString() : actual;
+      passed = expected.equals(actual);
+    } else {
+      if (TypeResolverUtil.isListType(resolvedType)) {
+        expected = JsonUtil.toMoshiJson(JsonUtil.toObject(expected, resolvedType));
+        actual = JsonUtil.toMoshiJson(JsonUtil.toObject(actual, resolvedType));
+
+        List<Object> list1 = JsonUtil.toObject(expected, resolvedType);
+        List<Object> list2 = JsonUtil.toObject(actual, resolvedType);
+
+        if (list1.size() == list2.size() && Set.copyOf(list1).equals(Set.copyOf(list2))) {
+          expected = actual;
+          passed = true;
+        }
+      } else if (TypeResolverUtil.isSetType(resolvedType)) {
+
+        String actualTemp = "[" + actual.substring(1, actual.length() - 1) + "]";
+        String expectedTemp = "[" + expected.substring(1, expected.length() - 1) + "]";
+        ParameterizedType pType = (ParameterizedType) resolvedType;
+        Type type = Types.newParameterizedType(List.class, pType.getActualTypeArguments()[0]);
+        List<Object> list1 = JsonUtil.toObject(expectedTemp, type);
+        List<Object> list2 = JsonUtil.toObject(actualTemp, type);
+
+        String actualReformatted = JsonUtil.toMoshiJson(list2);
+        String expectedReformatted = JsonUtil.toMoshiJson(list1);
+        actual = "{" + actualReformatted.substring(1, actualReformatted.length() - 1) + "}";
+        expected = "{" + expectedReformatted.substring(1, expectedReformatted.length() - 1) + "}";
+
+        if (list1.size() == list2.size()) {
+          expected = actual;
+          passed = true;
+        }
+      } else {
+        Object obj1 = JsonUtil.toObject(expected, resolvedType);
+        Object obj2 = JsonUtil.toObject(actual, resolvedType);
+        expected = JsonUtil.toMoshiJson(obj1);
+        actual = JsonUtil.toMoshiJson(obj2);
+        passed = obj1.equals(obj2);
+      }
+    }
+    return new String[] {expected, actual, passed ? "passed" : null};
+  }
+
+  /**
+   * The run of one shard of tests.
+   *
+   * @param from index of its first test
+   * @param to index after its last test
+   * @param response record of the run
+   * @param parsed its output and results; only results from from up to to belong to the shard
+   * @param wallMicros time the run took, start-up included
+   */
+  private record ShardRun(
+      int from,
+      int to,
+      ApiResponseRecord response,
+      ResultFrameParser.Parsed parsed,
+      boolean stopped,
+      long wallMicros) {}
+
+  /**
+   * Rounds a String number to a specified decimal places
+   *
+   * @param value number to be rounded
+   * @param places number of decimal places to round number to
+   * @return value rounded to specified decimal places
+   */
+  public static String format(String value, int places) {
+    if (places < 0) throw new IllegalArgumentException("Decimal places must be non-negative.");
+
+    double number = Double.parseDouble(value);
+    // Check if the number is a whole number with trailing zeros
+    if (number == Math.floor(number)) {
+      return new DecimalFormat("#.0").format(number);
+    }
+    StringBuilder pattern = new StringBuilder("#.");
+    for (int i = 0; i < places; i++) {
+      boolean flag = false;
+      pattern.append("#");
+    }
+
+    DecimalFormat df = new DecimalFormat(pattern.toString());
+    df.setRoundingMode(RoundingMode.HALF_UP);
+    return df.format(number);
+  }
+}
@@ -0,0 +1,169 @@
+package edu.brown.cs.student.code_engine;
+
+import com.google.common.hash.Hashing;
+import edu.brown.cs.student.storage.IStorage;
+import edu.brown.cs.student.util.AdapterRecords.TestRecord;
+import edu.brown.cs.student.util.JsonUtil;
+import edu.brown.cs.student.util.TypeResolverUtil;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+
+/**
+ * CachedProblem is what the problem cache holds for each problem: its tests already parsed, its
+ * return type already resolved and, once a language has been judged, the test harness rendered for
+ * that language and how long its tests took there. Judging a submission therefore does no json
+ * parsing or type resolution. Instances are immutable apart from the harness memo and runtime
+ * estimates, so one instance is shared by every concurrent run.
+ */
+public class CachedProblem {
+  private final String name;
+  private final List<TestRecord> tests;
+  private final boolean expectExact;
+  private final String returnType;
+  private final Type resolvedType;
+  private final String version;
+  private final Map<String, HarnessTemplate> harnesses = new ConcurrentHashMap<>();
+  private final Map<String, RuntimeEstimate> estimates = new ConcurrentHashMap<>();
+
+  private CachedProblem(
+      String name,
+      List<TestRecord> tests,
+      boolean expectExact,
+      String returnType,
+      Type resolvedType,
+      String version) {
+    this.name = name;
+    this.tests = tests;
+    this.expectExact = expectExact;
+    this.returnType = returnType;
+    this.resolvedType = resolvedType;
+    this.version = version;
+  }
+
+  /**
+   * Builds the cache entry of a problem.
+   *
+   * @param name name of the problem, which is also the name of the method under test
+   * @param tests tests of the problem
+   * @param expectExact whether results must match the expected values exactly
+   * @param returnType return type of the method under test, e.g. "List<Integer>"
+   * @return the cache entry
+   */
+  public static CachedProblem of(
+      String name, List<TestRecord> tests, boolean expectExact, String returnType) {
+    Type resolvedType;
+    try {
+      resolvedType = TypeResolverUtil.resolveType(returnType);
+    } catch (ClassNotFoundException e) {
+      // only needed for scoring; reported when a submission is scored
+      System.out.println("__RETURN_TYPE_RESOLUTION_ERR__: " + returnType);
+      resolvedType = null;
+    }
+    String version =
+        Hashing.sha256()
+            .hashString(
+                JsonUtil.toMoshiJson(tests) + "|" + expectExact + "|" + returnType,
+                StandardCharsets.UTF_8)
+            .toString();
+    return new CachedProblem(
+        name, List.copyOf(tests), expectExact, returnType, resolvedType, version);
+  }
+
+  /**
+   * Builds the cache entry of a problem document as stored in the Problems collection.
+   *
+   * @param problem the problem document
+   * @return the cache entry
+   */
+  public static CachedProblem fromDocument(Map<String, Object> problem) {
+    String testString = JsonUtil.toMoshiJson(problem.get("tests"));
+    return of(
+        problem.get("name").toString(),
+        JsonUtil.toObjectList(testString, TestRecord.class),
+        Boolean.parseBoolean(problem.get("expectExact").toString().toLowerCase()),
+        problem.get("returnType").toString());
+  }
+
+  /**
+   * Loads the cache entry of a problem cache key from storage. Used as the loader of the
+   * read-through problem cache.
+   *
+   * @param db storage holding the Problems collection
+   * @param key cache key of the form "Problems/" + name
+   * @return the cache entry, or null if there is no such problem
+   */
+  public static CachedProblem load(IStorage db, String key) {
+    String name = key.substring(key.indexOf('/') + 1);
+    try {
+      Map<String, Object> problem = db.getProblemByName(name);
+      return problem == null ? null : fromDocument(problem);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return null;
+    } catch (ExecutionException | IOException e) {
+      System.out.println("__PROBLEM_LOAD_ERR__: " + name + " " + e.getMessage());
+      return null;
+    }
+  }
+
+  public String name() {
+    return this.name;
+  }
+
+  public List<TestRecord> tests() {
+    return this.tests;
+  }
+
+  public boolean expectExact() {
+    return this.expectExact;
+  }
+
+  public String returnType() {
+    return this.returnType;
+  }
+
+  /**
+   * @return the resolved return type
+   * @throws ClassNotFoundException if the return type could not be resolved
+   */
+  public Type resolvedType() throws ClassNotFoundException {
+    if (this.resolvedType == null) {
+      throw new ClassNotFoundException(this.returnType);
+    }
+    return this.resolvedType;
+  }
+
+  /**
+   * @return hash of the tests, return type and expectExact flag; changes whenever the tests do
+   */
+  public String version() {
+    return this.version;
+  }
+
+  /**
+   * Returns a compiled test harness, building it the first time it is asked for. Used through
+   * {@link HarnessTemplateCache}.
+   *
+   * @param key language of the submission, followed by the shard's range of tests if the tests are
+   *     split
+   * @param build builds the harness from its key
+   * @return the harness template submissions are assembled with
+   */
+  HarnessTemplate harness(String key, Function<String, HarnessTemplate> build) {
+    return this.harnesses.computeIfAbsent(key, build);
+  }
+
+  /**
+   * @param language language of the submission
+   * @return how long the tests of this problem take in the language, measured over past runs
+   */
+  public RuntimeEstimate runtimeEstimate(String language) {
+    return this.estimates.computeIfAbsent(language, ignored -> new RuntimeEstimate());
+  }
+}
@@ -0,0 +1,110 @@
+package edu.brown.cs.student.code_engine;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * CircuitBreaker stops calls to a code engine that keeps failing. After a number of failures in a
+ * row it opens and turns every call away at once; once a cool-down has passed it lets a single
+ * trial call through, closing again if that call succeeds and reopening if it fails.
+ */
+public class CircuitBreaker {
+  public enum State {
+    CLOSED,
+    OPEN,
+    HALF_OPEN
+  }
+
+  private final int failureThreshold;
+  private final long openMillis;
+  private final LongSupplier millisClock;
+
+  private State state = State.CLOSED;
+  private int consecutiveFailures = 0;
+  private long openedAt = 0;
+  private boolean trialInFlight = false;
+  private long timesOpened = 0;
+  private long rejected = 0;
+
+  /**
+   * @param failureThreshold failures in a row that open the breaker
+   * @param openMillis time the breaker stays open before a trial call is let through
+   */
+  public CircuitBreaker(int failureThreshold, long openMillis) {
+    this(failureThreshold, openMillis, System::currentTimeMillis);
+  }
+
+  /**
+   * @param millisClock source of the current time in milliseconds, {@link System#currentTimeMillis}
+   *     outside tests
+   */
+  CircuitBreaker(int failureThreshold, long openMillis, LongSupplier millisClock) {
+    this.failureThreshold = failureThreshold;
+    this.openMillis = openMillis;
+    this.millisClock = millisClock;
+  }
+
+  /**
+   * Asks to make a call. A caller that is allowed must report how the call went with {@link
+   * #recordSuccess}, {@link #recordFailure} or, if it never made the call, {@link #release}.
+   *
+   * @return whether the call may be made
+   */
+  public synchronized boolean tryAcquire() {
+    if (this.state == State.OPEN
+        && this.millisClock.getAsLong() - this.openedAt >= this.openMillis) {
+      this.state = State.HALF_OPEN;
+    }
+    if (this.state == State.CLOSED || (this.state == State.HALF_OPEN && !this.trialInFlight)) {
+      this.trialInFlight = this.state == State.HALF_OPEN;
+      return true;
+    }
+    this.rejected++;
+    return false;
+  }
+
+  /** Reports that the engine answered, which closes the breaker. */
+  public synchronized void recordSuccess() {
+    this.consecutiveFailures = 0;
+    this.trialInFlight = false;
+    this.state = State.CLOSED;
+  }
+
+  /** Reports that the engine failed or could not be reached. */
+  public synchronized void recordFailure() {
+    this.consecutiveFailures++;
+    this.trialInFlight = false;
+    if (this.state == State.HALF_OPEN || this.consecutiveFailures >= this.failureThreshold) {
+      if (this.state != State.OPEN) {
+        this.timesOpened++;
+      }
+      this.state = State.OPEN;
+      this.openedAt = this.millisClock.getAsLong();
+    }
+  }
+
+  /** Gives back a call that was allowed but never made. */
+  public synchronized void release() {
+    this.trialInFlight = false;
+  }
+
+  /**
+   * @return the current state
+   */
+  public synchronized State state() {
+    return this.state;
+  }
+
+  /**
+   * @return state, failures in a row, times opened and calls turned away
+   */
+  public synchronized Map<String, Object> stats() {
+    Map<String, Object> statsMap = new HashMap<>();
+    statsMap.put("state", this.state.name());
+    statsMap.put("consecutiveFailures", this.consecutiveFailures);
+    statsMap.put("timesOpened", this.timesOpened);
+    statsMap.put("rejected", this.rejected);
+    return statsMap;
+  }
+}
@@ -0,0 +1,117 @@
+package edu.brown.cs.student.code_engine;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A test harness compiled into the pieces every program run for it is assembled from: a prefix, a
+ * slot for the submitted code and a suffix holding the harness. The suffix is kept as literal text
+ * split around the few values that change per run (the nonce, the submitted class, the time limit
+ * and the fail-fast flag), so assembling a program never searches the harness text; it sums the
+ * lengths of the pieces and copies them once into a buffer of exactly that size.
+ */
+public final class HarnessTemplate {
+  /** Values filled in per run, in the order of the arguments of {@link #assemble}. */
+  public enum Slot {
+    USER_CODE("<USER_CODE>"),
+    NONCE("<NONCE>"),
+    CLASS("<CLASS>"),
+    TIMEOUT("<TIMEOUT_MILLIS>"),
+    FAIL_FAST("<FAIL_FAST>");
+
+    private final String placeholder;
+
+    Slot(String placeholder) {
+      this.placeholder = placeholder;
+    }
+
+    /**
+     * @return the placeholder the slot is written as in the harness templates
+     */
+    public String placeholder() {
+      return this.placeholder;
+    }
+  }
+
+  private static final Slot[] SLOTS = Slot.values();
+
+  // literals[i] comes before slots[i]; the last literal ends the program
+  private final String[] literals;
+  private final Slot[] slots;
+  private final int literalLength;
+
+  private HarnessTemplate(List<String> literals, List<Slot> slots) {
+    this.literals = literals.toArray(new String[0]);
+    this.slots = slots.toArray(new Slot[0]);
+    int length = 0;
+    for (String literal : this.literals) {
+      length += literal.length();
+    }
+    this.literalLength = length;
+  }
+
+  /**
+   * Compiles a template. The submitted code goes between prefix and suffix, and the placeholders of
+   * the other slots are found in the suffix.
+   *
+   * @param prefix text before the submitted code
+   * @param suffix text after the submitted code, the harness
+   * @return the compiled template
+   */
+  public static HarnessTemplate compile(String prefix, String suffix) {
+    List<String> literals = new ArrayList<>();
+    List<Slot> slots = new ArrayList<>();
+    literals.add(prefix);
+    slots.add(Slot.USER_CODE);
+    int start = 0;
+    int open = suffix.indexOf('<');
+    while (open >= 0) {
+      Slot slot = slotAt(suffix, open);
+      if (slot == null) {
+        open = suffix.indexOf('<', open + 1);
+        continue;
+      }
+      literals.add(suffix.substring(start, open));
+      slots.add(slot);
+      start = open + slot.placeholder.length();
+      open = suffix.indexOf('<', start);
+    }
+    literals.add(suffix.substring(start));
+    return new HarnessTemplate(literals, slots);
+  }
+
+  private static Slot slotAt(String text, int index) {
+    for (Slot slot : SLOTS) {
+      if (slot != Slot.USER_CODE && text.startsWith(slot.placeholder, index)) {
+        return slot;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Assembles the program of a run.
+   *
+   * @param userCode the submitted code, as it goes into the program
+   * @param nonce nonce the harness marks its result frames with
+   * @param className name of the submitted class, for languages that call through one
+   * @param timeoutMillis time a single test may take
+   * @param failFast whether the harness stops after the first test that does not return
+   * @return the program
+   */
+  public String assemble(
+      String userCode, String nonce, String className, long timeoutMillis, boolean failFast) {
+    String[] values = {
+      userCode, nonce, className, String.valueOf(timeoutMillis), failFast ? "1" : "0"
+    };
+    int length = this.literalLength;
+    for (Slot slot : this.slots) {
+      length += values[slot.ordinal()].length();
+    }
+    StringBuilder program = new StringBuilder(length);
+    for (int i = 0; i < this.slots.length; i++) {
+      program.append(this.literals[i]).append(values[this.slots[i].ordinal()]);
+    }
+    return program.append(this.literals[this.slots.length]).toString();
+  }
+}
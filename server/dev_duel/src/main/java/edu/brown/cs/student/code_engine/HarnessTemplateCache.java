@@ -0,0 +1,115 @@
+package edu.brown.cs.student.code_engine;
+
+import edu.brown.cs.student.util.AdapterRecords.TestRecord;
+import edu.brown.cs.student.util.JsonUtil;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * HarnessTemplateCache renders the test harness of a problem from the language templates in
+ * data/codemap.json and compiles it into a {@link HarnessTemplate}, once per problem, language and
+ * shard of tests. Templates are kept on the problem's cache entry, so they are dropped together
+ * with it and are rebuilt whenever the tests change. Warming a problem when it is loaded builds the
+ * templates of every language up front, so no submission renders a harness.
+ */
+public class HarnessTemplateCache {
+  private final Map<String, Map<String, String>> codemap;
+
+  /**
+   * @param codemap the language templates, as read from data/codemap.json
+   */
+  public HarnessTemplateCache(Map<String, Map<String, String>> codemap) {
+    this.codemap = codemap;
+  }
+
+  /**
+   * @param path path of the codemap json file
+   * @return a cache rendering with the language templates of the file
+   */
+  public static HarnessTemplateCache load(String path) {
+    return new HarnessTemplateCache(JsonUtil.readJsonToMap(path));
+  }
+
+  /**
+   * Builds the templates running the whole suite in every language the codemap has templates for.
+   *
+   * @param problem cache entry of a freshly loaded problem, may be null
+   * @return the same problem
+   */
+  public CachedProblem warm(CachedProblem problem) {
+    if (problem != null) {
+      for (String language : this.codemap.get("testCall").keySet()) {
+        this.get(problem, language, 0, problem.tests().size());
+      }
+    }
+    return problem;
+  }
+
+  /**
+   * Returns the template running a range of tests, building it the first time it is asked for.
+   *
+   * @param problem cache entry holding the tests
+   * @param language language of the submission
+   * @param from index of the first test to run
+   * @param to index after the last test to run
+   * @return the compiled template
+   */
+  public HarnessTemplate get(CachedProblem problem, String language, int from, int to) {
+    String key =
+        from == 0 && to == problem.tests().size() ? language : language + "#" + from + "-" + to;
+    return problem.harness(
+        key, ignored -> this.compile(problem.tests(), from, to, problem.name(), language));
+  }
+
+  /**
+   * Compiles the template of a range of tests. Java tests go inside the submitted class, so the
+   * class's last brace is cut from the code and closes the harness instead; other languages append
+   * the harness after the code.
+   */
+  private HarnessTemplate compile(
+      List<TestRecord> tests, int from, int to, String problemName, String language) {
+    String harness = this.render(tests, from, to, problemName, language);
+    return language.equals("java")
+        ? HarnessTemplate.compile("", harness + "}")
+        : HarnessTemplate.compile("", "\n" + harness);
+  }
+
+  /**
+   * Forms the harness appended to the written code: the language's helpers, then its main method
+   * running each test. The nonce of the run, and for java the submitted class, are left as
+   * placeholders, so the harness itself only depends on the problem, language and tests.
+   *
+   * @param tests a list of test records
+   * @param from index of the first test to run
+   * @param to index after the last test to run
+   * @param problemName name of problem
+   * @param language language of the submission
+   * @return the harness code
+   */
+  public String render(
+      List<TestRecord> tests, int from, int to, String problemName, String language) {
+    StringBuilder testCode = new StringBuilder();
+    String testCall = this.codemap.get("testCall").get(language);
+    String classPlaceholder = HarnessTemplate.Slot.CLASS.placeholder();
+    // tests keep their index in the whole suite, so shards report results in place
+    for (int i = from; i < to; i++) {
+      TestRecord test = tests.get(i);
+      String functionCall =
+          switch (language) {
+              // called on an instance, so both static and instance methods can be tested
+            case "java" ->
+                "new " + classPlaceholder + "()." + problemName + "(" + test.jparams() + ")";
+              // list literals become initializer lists
+            case "c++" ->
+                problemName + "(" + test.params().replace('[', '{').replace(']', '}') + ")";
+            default -> problemName + "(" + test.params() + ")";
+          };
+      testCode.append(
+          testCall.replace("<INDEX>", String.valueOf(i)).replace("<CALL>", functionCall));
+    }
+    return this.codemap.get("helpers").get(language)
+        + "\n"
+        + this.codemap.get("mainMethod").get(language).replace("<TESTCODE>", testCode)
+        + "\n";
+  }
+}
@@ -0,0 +1,466 @@
+package edu.brown.cs.student.code_engine;
+
+import edu.brown.cs.student.storage.CacheStorage;
+import edu.brown.cs.student.util.AdapterRecords.ApiResponseRecord;
+import edu.brown.cs.student.util.AdapterRecords.ApiResponseRunFieldRecord;
+import edu.brown.cs.student.util.AdapterRecords.CodeRecord;
+import edu.brown.cs.student.util.AdapterRecords.RuntimeRecord;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * LocalProcessCodeEngine runs submissions as python3/node/java subprocesses on this machine instead
+ * of sending them to piston. Every run gets one of a fixed number of pre-created sandbox
+ * directories, so at most that many programs (one per core by default) run at the same time. Runs
+ * are limited in cpu time, file size and process count through ulimit, in memory through ulimit or
+ * the runtime's own heap flag, and in wall-clock time by killing the process. They see none of the
+ * server's environment variables and, where unshare is available, run without network in their own
+ * pid namespace, so every process they start dies with them. Output is read over pipes while the
+ * program runs, so a fail-fast run is killed as soon as one of its tests does not pass and the
+ * program cannot reach the results it is judged on.
+ *
+ * <p>This is a development engine, not a sandbox for untrusted code: programs run as the server's
+ * user and can read any file that user can, e.g. its config and credentials. Use piston, or run the
+ * server itself in a container, wherever strangers can submit code.
+ */
+public class LocalProcessCodeEngine extends AbstractCodeEngine {
+  // languages this engine can run and the command that runs a source file for each
+  private static final Map<String, List<String>> VERSION_COMMANDS =
+      Map.of(
+          "python", List.of("python3", "--version"),
+          "javascript", List.of("node", "--version"),
+          "java", List.of("java", "-version"));
+  private static final Pattern VERSION_PATTERN = Pattern.compile("(\\d+(\\.\\d+)+)");
+  private static final int MAX_OUTPUT_BYTES = 1 << 20;
+  // counts every process and thread of the server's user, so it is well above the server's own
+  private static final int MAX_PROCESSES = 1024;
+  // how long output is still read after the program was killed
+  private static final long DRAIN_MILLIS = 1000;
+  private static final List<String> NAMESPACES =
+      List.of("unshare", "--net", "--pid", "--fork", "--kill-child", "--map-root-user");
+
+  private final BlockingQueue<Path> sandboxes;
+  private final long wallClockMillis;
+  private final int cpuSeconds;
+  private final int memoryMegabytes;
+  private final Map<String, String> runtimeVersions;
+  private final boolean isolated;
+  private final ExecutorService outputReaders =
+      Executors.newCachedThreadPool(
+          runnable -> {
+            Thread thread = new Thread(runnable, "local-engine-output");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  /** Creates an engine with one sandbox per core, 10s wall clock, 5s cpu and 256MB per run. */
+  public LocalProcessCodeEngine(CacheStorage<CachedProblem> cache) throws IOException {
+    this(cache, Runtime.getRuntime().availableProcessors(), 10_000, 5, 256);
+  }
+
+  /**
+   * @param cache problem cache holding the tests of each problem
+   * @param sandboxCount number of sandbox directories, i.e. the number of parallel runs
+   * @param wallClockMillis time after which a run is killed
+   * @param cpuSeconds cpu time a run may use
+   * @param memoryMegabytes memory a run may use
+   * @throws IOException if the sandbox directories cannot be created
+   */
+  public LocalProcessCodeEngine(
+      CacheStorage<CachedProblem> cache,
+      int sandboxCount,
+      long wallClockMillis,
+      int cpuSeconds,
+      int memoryMegabytes)
+      throws IOException {
+    super(cache);
+    this.wallClockMillis = wallClockMillis;
+    this.cpuSeconds = cpuSeconds;
+    this.memoryMegabytes = memoryMegabytes;
+
+    Path root = Files.createTempDirectory("devduel-sandbox");
+    this.sandboxes = new ArrayBlockingQueue<>(sandboxCount);
+    for (int i = 0; i < sandboxCount; i++) {
+      this.sandboxes.add(Files.createDirectory(root.resolve("sandbox" + i)));
+    }
+    this.runtimeVersions = this.probeRuntimeVersions();
+    this.isolated = namespacesAvailable();
+    if (!this.isolated) {
+      System.out.println(
+          "__SANDBOX_NO_NAMESPACES_ERR__: unshare failed, runs keep network and process access");
+    }
+  }
+
+  @Override
+  public Map<String, Object> getRuntimes() {
+    List<RuntimeRecord> outputList = new ArrayList<>();
+    for (Map.Entry<String, String> runtime : this.runtimeVersions.entrySet()) {
+      outputList.add(new RuntimeRecord(runtime.getKey(), runtime.getValue()));
+    }
+    Map<String, Object> clientResponse = new LinkedHashMap<>();
+    clientResponse.put("response_type", "success");
+    clientResponse.put("body", outputList);
+    return clientResponse;
+  }
+
+  @Override
+  protected ApiResponseRecord execute(CodeRecord code) {
+    // nothing watches this run, so the parser only sees its output
+    return this.execute(code, new ResultFrameParser(ResultFrameParser.newNonce(), 0));
+  }
+
+  @Override
+  protected ApiResponseRecord execute(CodeRecord code, ResultFrameParser frames) {
+    if (!this.runtimeVersions.containsKey(code.language())) {
+      return new ApiResponseRecord("Unsupported language: " + code.language(), null);
+    }
+    Path sandbox;
+    try {
+      // waits until one of the sandboxes is free
+      sandbox = this.sandboxes.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return new ApiResponseRecord("code engine error.", null);
+    }
+    try {
+      return this.runInSandbox(sandbox, code, frames);
+    } catch (IOException e) {
+      e.printStackTrace();
+      return new ApiResponseRecord("code engine error.", null);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return new ApiResponseRecord("code engine error.", null);
+    } finally {
+      this.clearSandbox(sandbox);
+      this.sandboxes.add(sandbox);
+    }
+  }
+
+  /**
+   * Writes the program into the sandbox, runs it under the configured limits and collects its
+   * output. Stdout is fed to the frame parser while the program runs, and the program is killed
+   * once the parser asks to stop or either stream outgrows its cap.
+   *
+   * @param sandbox directory the program is written to and run in
+   * @param code record whose code field holds the program to run
+   * @param frames parser the output of the run is fed into
+   * @return record of the run in the same shape as the piston response
+   */
+  private ApiResponseRecord runInSandbox(Path sandbox, CodeRecord code, ResultFrameParser frames)
+      throws IOException, InterruptedException {
+    String fileName = "devduel" + this.helperCodeMap.get("extension").get(code.language());
+    Files.writeString(sandbox.resolve(fileName), code.code(), StandardCharsets.UTF_8);
+
+    ProcessBuilder builder =
+        new ProcessBuilder(this.command(code.language(), fileName)).directory(sandbox.toFile());
+    // nothing of the server's environment, e.g. its credentials, reaches the program
+    Map<String, String> environment = builder.environment();
+    String path = environment.getOrDefault("PATH", "/usr/local/bin:/usr/bin:/bin");
+    environment.clear();
+    environment.put("PATH", path);
+    environment.put("HOME", sandbox.toString());
+    environment.put("LANG", "C.UTF-8");
+    Process process = builder.start();
+    // submissions never read stdin
+    process.getOutputStream().close();
+    OutputReader stdout = new OutputReader(process.getInputStream(), frames, process);
+    OutputReader stderr = new OutputReader(process.getErrorStream(), null, process);
+    Future<?> stdoutRead = this.outputReaders.submit(stdout);
+    Future<?> stderrRead = this.outputReaders.submit(stderr);
+
+    boolean finished = process.waitFor(this.wallClockMillis, TimeUnit.MILLISECONDS);
+    // also takes down anything the program left running in the background
+    killTree(process);
+    process.waitFor();
+    // past this point the readers no longer touch the parser or their text
+    awaitReader(stdoutRead, stdout);
+    awaitReader(stderrRead, stderr);
+
+    boolean stopped = stdout.stopped();
+    String stderrText = stderr.text();
+    // a run stopped on purpose needs no explanation, the tests left were not needed
+    if (stdout.overflowed() || stderr.overflowed()) {
+      stderrText += "\nOutput limit exceeded: run printed more than " + MAX_OUTPUT_BYTES + " bytes";
+    } else if (!stopped && !finished) {
+      stderrText += "\nTime limit exceeded: run took longer than " + this.wallClockMillis + "ms";
+    } else if (!stopped && process.exitValue() > 128 && stderrText.isEmpty()) {
+      // killed by a signal, usually a ulimit, without printing anything
+      stderrText =
+          "Run killed by signal " + (process.exitValue() - 128) + ": resource limit exceeded";
+    }
+    // piston reports stdout followed by stderr in a single output field
+    String output = stderrText.isEmpty() ? stdout.text() : stdout.text() + stderrText;
+    frames.accept(stderrText);
+    return new ApiResponseRecord(null, new ApiResponseRunFieldRecord(stderrText, output));
+  }
+
+  /**
+   * Builds the command running a source file. The interpreter is started through sh so ulimit can
+   * cap cpu time, file size, process count and, for python, address space before the program runs.
+   * The jvm and node reserve far more address space than they use, so their memory is capped with
+   * their own heap flags instead. Where namespaces are available the shell runs under unshare, with
+   * no network interface but loopback and as pid 1 of a new pid namespace, so killing it kills
+   * every process the program started; the shell stays pid 1 so the program keeps default signal
+   * handling.
+   *
+   * @param language language of the source file
+   * @param fileName name of the source file inside the sandbox
+   * @return the command to pass to the process builder
+   */
+  private List<String> command(String language, String fileName) {
+    // bash names the process limit -u, dash -p
+    String limits =
+        "ulimit -t "
+            + this.cpuSeconds
+            + "; ulimit -f "
+            + (MAX_OUTPUT_BYTES / 512)
+            + "; { ulimit -u "
+            + MAX_PROCESSES
+            + " || ulimit -p "
+            + MAX_PROCESSES
+            + "; } 2>/dev/null";
+    List<String> runtimeCommand =
+        switch (language) {
+          case "python" -> {
+            limits += "; ulimit -v " + (this.memoryMegabytes * 1024);
+            yield List.of("python3", fileName);
+          }
+          case "javascript" ->
+              List.of("node", "--max-old-space-size=" + this.memoryMegabytes, fileName);
+          case "java" ->
+              List.of("java", "-Xmx" + this.memoryMegabytes + "m", "-XX:+UseSerialGC", fileName);
+          default -> throw new IllegalArgumentException("Unsupported language: " + language);
+        };
+    List<String> command = new ArrayList<>();
+    if (this.isolated) {
+      command.addAll(NAMESPACES);
+      command.addAll(List.of("sh", "-c", limits + "; \"$@\"", "sh"));
+    } else {
+      command.addAll(List.of("sh", "-c", limits + "; exec \"$@\"", "sh"));
+    }
+    command.addAll(runtimeCommand);
+    return command;
+  }
+
+  /**
+   * @return whether unshare can give runs their own network and pid namespaces on this machine
+   */
+  private static boolean namespacesAvailable() {
+    List<String> probe = new ArrayList<>(NAMESPACES);
+    probe.add("true");
+    try {
+      Process process = new ProcessBuilder(probe).redirectErrorStream(true).start();
+      process.getInputStream().readAllBytes();
+      return process.waitFor(10, TimeUnit.SECONDS) && process.exitValue() == 0;
+    } catch (IOException | InterruptedException e) {
+      return false;
+    }
+  }
+
+  /** Kills a program together with every process it started. */
+  private static void killTree(Process process) {
+    // listed first, they are no longer descendants once the program is gone
+    List<ProcessHandle> descendants = process.descendants().toList();
+    process.destroyForcibly();
+    descendants.forEach(ProcessHandle::destroyForcibly);
+  }
+
+  /**
+   * Waits for a reader to reach the end of its stream. A stream still held open, e.g. by a process
+   * that escaped the kill, is given up on: the reader is abandoned, which waits for it to finish
+   * what it was handing to the parser and keeps it from touching the parser again.
+   */
+  private static void awaitReader(Future<?> read, OutputReader reader) throws InterruptedException {
+    try {
+      read.get(DRAIN_MILLIS, TimeUnit.MILLISECONDS);
+    } catch (TimeoutException e) {
+      reader.abandon();
+      read.cancel(true);
+    } catch (ExecutionException e) {
+      System.out.println("__SANDBOX_OUTPUT_ERR__: " + e.getCause());
+    }
+  }
+
+  /** Removes everything a run left behind so the sandbox can be handed to the next run. */
+  private void clearSandbox(Path sandbox) {
+    try (Stream<Path> files = Files.list(sandbox)) {
+      for (Path file : (Iterable<Path>) files::iterator) {
+        deleteRecursively(file);
+      }
+    } catch (IOException e) {
+      System.out.println("__SANDBOX_CLEANUP_ERR__: " + e.getMessage());
+    }
+  }
+
+  private static void deleteRecursively(Path path) throws IOException {
+    if (Files.isDirectory(path)) {
+      try (Stream<Path> children = Files.list(path)) {
+        for (Path child : (Iterable<Path>) children::iterator) {
+          deleteRecursively(child);
+        }
+      }
+    }
+    Files.deleteIfExists(path);
+  }
+
+  /**
+   * Reads one output stream of a program while it runs. Bytes are decoded as utf-8 across reads, so
+   * a character split between two reads is not garbled. Stdout is fed to the frame parser as it
+   * arrives; the program is killed once the parser asks to stop or the stream outgrows its cap. The
+   * parser and the collected text are only touched under the reader's lock, so the run can abandon
+   * a reader still blocked on its stream and then use them safely.
+   */
+  private static class OutputReader implements Runnable {
+    private final InputStream stream;
+    private final ResultFrameParser frames;
+    private final Process process;
+    private final CharsetDecoder decoder =
+        StandardCharsets.UTF_8
+            .newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    // utf-8 never decodes to more chars than bytes, so the chars always fit
+    private final ByteBuffer bytes = ByteBuffer.allocate(8192);
+    private final CharBuffer chars = CharBuffer.allocate(8192);
+    private final StringBuilder text = new StringBuilder();
+    private long read;
+    private boolean stopped;
+    private boolean overflowed;
+    private boolean abandoned;
+
+    /**
+     * @param stream output stream of the program
+     * @param frames parser the output is fed into, or null to only collect it
+     * @param process the program, killed when reading stops early
+     */
+    OutputReader(InputStream stream, ResultFrameParser frames, Process process) {
+      this.stream = stream;
+      this.frames = frames;
+      this.process = process;
+    }
+
+    @Override
+    public void run() {
+      try (InputStream in = this.stream) {
+        boolean going = true;
+        int count;
+        while (going
+            && (count = in.read(this.bytes.array(), this.bytes.position(), this.bytes.remaining()))
+                >= 0) {
+          this.bytes.position(this.bytes.position() + count);
+          this.read += count;
+          going = this.decode(false);
+        }
+        if (going) {
+          this.decode(true);
+        } else {
+          killTree(this.process);
+        }
+      } catch (IOException e) {
+        // the stream is closed under the reader once the program is killed
+      }
+    }
+
+    /**
+     * Decodes the bytes read so far and hands them on.
+     *
+     * @return whether to keep reading
+     */
+    private synchronized boolean decode(boolean endOfInput) {
+      if (this.abandoned) {
+        // the run is over, nothing read any more is looked at
+        return false;
+      }
+      this.bytes.flip();
+      this.decoder.decode(this.bytes, this.chars, endOfInput);
+      if (endOfInput) {
+        this.decoder.flush(this.chars);
+      }
+      this.bytes.compact();
+      this.chars.flip();
+      this.text.append(this.chars);
+      boolean going = this.frames == null || this.frames.accept(this.chars);
+      this.chars.clear();
+      this.stopped = !going;
+      if (going && !endOfInput && this.read > MAX_OUTPUT_BYTES) {
+        this.overflowed = true;
+        going = false;
+      }
+      return going;
+    }
+
+    /** Stops the reader from handing anything more to the parser or the collected text. */
+    synchronized void abandon() {
+      this.abandoned = true;
+    }
+
+    /**
+     * @return whether the parser asked for the run to stop
+     */
+    synchronized boolean stopped() {
+      return this.stopped;
+    }
+
+    /**
+     * @return whether the program printed more than the cap and was killed for it
+     */
+    synchronized boolean overflowed() {
+      return this.overflowed;
+    }
+
+    /**
+     * @return everything read from the stream
+     */
+    synchronized String text() {
+      return this.text.toString();
+    }
+  }
+
+  /**
+   * Asks each runtime for its version. Runtimes that are not installed are left out, so the client
+   * only offers languages this machine can actually run.
+   *
+   * @return map from language to installed version
+   */
+  private Map<String, String> probeRuntimeVersions() {
+    Map<String, String> versions = new LinkedHashMap<>();
+    for (Map.Entry<String, List<String>> entry : VERSION_COMMANDS.entrySet()) {
+      try {
+        Process process = new ProcessBuilder(entry.getValue()).redirectErrorStream(true).start();
+        String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        if (process.waitFor(10, TimeUnit.SECONDS) && process.exitValue() == 0) {
+          Matcher matcher = VERSION_PATTERN.matcher(output);
+          versions.put(entry.getKey(), matcher.find() ? matcher.group(1) : "local");
+        }
+      } catch (IOException | InterruptedException e) {
+        System.out.println("__RUNTIME_NOT_FOUND__: " + entry.getKey() + " " + e.getMessage());
+      }
+    }
+    if (versions.isEmpty()) {
+      System.out.println("__NO_LOCAL_RUNTIMES_ERR__: no python3, node or java found on PATH");
+    }
+    return versions;
+  }
+}
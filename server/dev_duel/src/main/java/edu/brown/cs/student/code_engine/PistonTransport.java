@@ -0,0 +1,89 @@
+package edu.brown.cs.student.code_engine;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * PistonTransport is the single HTTP client shared by every call to the piston api. The underlying
+ * java.net.http client negotiates HTTP/2 when the host supports it and keeps connections alive
+ * between requests, so submissions reuse an open TLS connection instead of paying for a handshake
+ * each time.
+ */
+public class PistonTransport {
+  public static final String DEFAULT_BASE_URL = "https://emkc.org/api/v2/piston/";
+  public static final Duration DEFAULT_CONNECT_TIMEOUT = Duration.ofSeconds(5);
+  public static final Duration DEFAULT_REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+  private final String baseUrl;
+  private final Duration requestTimeout;
+  private final HttpClient client;
+
+  /** Creates a transport to the public piston instance with the default timeouts. */
+  public PistonTransport() {
+    this(DEFAULT_BASE_URL, DEFAULT_CONNECT_TIMEOUT, DEFAULT_REQUEST_TIMEOUT);
+  }
+
+  /**
+   * @param baseUrl url of the piston api, ending with a slash
+   * @param connectTimeout maximum time to wait for a connection to be established
+   * @param requestTimeout maximum time to wait for a response once a request is sent
+   */
+  public PistonTransport(String baseUrl, Duration connectTimeout, Duration requestTimeout) {
+    this.baseUrl = baseUrl;
+    this.requestTimeout = requestTimeout;
+    ExecutorService executor =
+        Executors.newCachedThreadPool(
+            runnable -> {
+              Thread thread = new Thread(runnable, "piston-http");
+              thread.setDaemon(true);
+              return thread;
+            });
+    this.client =
+        HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .connectTimeout(connectTimeout)
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .executor(executor)
+            .build();
+  }
+
+  /**
+   * Sends a GET request without blocking.
+   *
+   * @param path path relative to the base url, e.g. "runtimes"
+   * @return future of the response with its body read as a string
+   */
+  public CompletableFuture<HttpResponse<String>> getAsync(String path) {
+    HttpRequest request =
+        HttpRequest.newBuilder(URI.create(this.baseUrl + path))
+            .timeout(this.requestTimeout)
+            .header("Content-Type", "application/json")
+            .GET()
+            .build();
+    return this.client.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+  }
+
+  /**
+   * Sends a json POST request without blocking.
+   *
+   * @param path path relative to the base url, e.g. "execute"
+   * @param payload json body of the request
+   * @return future of the response with its body read as a string
+   */
+  public CompletableFuture<HttpResponse<String>> postAsync(String path, String payload) {
+    HttpRequest request =
+        HttpRequest.newBuilder(URI.create(this.baseUrl + path))
+            .timeout(this.requestTimeout)
+            .header("Content-Type", "application/json")
+            .header("Accept", "*")
+            .POST(HttpRequest.BodyPublishers.ofString(payload))
+            .build();
+    return this.client.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+  }
+}
@@ -0,0 +1,160 @@
+package edu.brown.cs.student.code_engine;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import edu.brown.cs.student.storage.CacheStorage;
+import edu.brown.cs.student.util.AdapterRecords.CodeRecord;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * ResultCachingCodeEngine answers repeated submissions of the same code without running them again.
+ * Results are stored under a hash of the problem name, language, version, fail-fast flag,
+ * normalized code and the problem's test set, so a change to the tests never serves a stale score.
+ * Identical submissions that arrive while the first one is still running wait for that run instead
+ * of starting their own.
+ */
+public class ResultCachingCodeEngine implements ICodeEngineApi {
+  // test outcomes that only depend on the code; skipped tests follow one of these in fail-fast runs
+  private static final Set<String> REPEATABLE_STATUSES =
+      Set.of("passed", "failed", TestResult.ERROR, TestResult.SKIPPED);
+
+  private final ICodeEngineApi engine;
+  private final CacheStorage<CachedProblem> problemCache;
+  private final CacheStorage<Map<String, Object>> results;
+  private final ConcurrentMap<String, CompletableFuture<Map<String, Object>>> inFlight =
+      new ConcurrentHashMap<>();
+
+  /**
+   * @param engine engine that runs submissions missing from the cache
+   * @param problemCache problem cache holding the tests of each problem
+   * @param maxSize maximum number of cached results
+   * @param ttlMinutes minutes a result is kept after it was produced
+   */
+  public ResultCachingCodeEngine(
+      ICodeEngineApi engine,
+      CacheStorage<CachedProblem> problemCache,
+      int maxSize,
+      int ttlMinutes) {
+    this.engine = engine;
+    this.problemCache = problemCache;
+    this.results = new CacheStorage<>(maxSize, ttlMinutes, ttlMinutes);
+  }
+
+  @Override
+  public Map<String, Object> getRuntimes() {
+    return this.engine.getRuntimes();
+  }
+
+  @Override
+  public Map<String, Object> runCode(CodeRecord payload) {
+    String key = this.resultKey(payload);
+    if (key == null) {
+      // tests unknown, nothing to key the result on
+      return this.engine.runCode(payload);
+    }
+    Map<String, Object> cached = this.results.get(key);
+    if (cached != null) {
+      return new HashMap<>(cached);
+    }
+
+    CompletableFuture<Map<String, Object>> run = new CompletableFuture<>();
+    CompletableFuture<Map<String, Object>> running = this.inFlight.putIfAbsent(key, run);
+    if (running != null) {
+      try {
+        return new HashMap<>(running.join());
+      } catch (CompletionException e) {
+        // the shared run failed; run this submission on its own
+        return this.engine.runCode(payload);
+      }
+    }
+    try {
+      // a run may have finished between the cache check and claiming the key
+      Map<String, Object> result = this.results.get(key);
+      if (result == null) {
+        result = this.engine.runCode(payload);
+        if (isDeterministic(result)) {
+          this.results.put(key, result);
+        }
+      }
+      run.complete(result);
+      return new HashMap<>(result);
+    } catch (RuntimeException e) {
+      run.completeExceptionally(e);
+      throw e;
+    } finally {
+      this.inFlight.remove(key, run);
+    }
+  }
+
+  /**
+   * Only scored runs and runs that failed because of the submitted code are worth repeating; engine
+   * failures such as rate limits must be retried. A scored run is only repeatable if every test
+   * returned or threw: a test that timed out or is missing may have been cut short by a slow or
+   * loaded host, so the next identical submission runs again.
+   */
+  private static boolean isDeterministic(Map<String, Object> result) {
+    Object responseType = result == null ? null : result.get("response_type");
+    if ("bug".equals(responseType)) {
+      return true;
+    }
+    if (!"success".equals(responseType) || !(result.get("tests") instanceof List<?> tests)) {
+      return false;
+    }
+    for (Object test : tests) {
+      Object status = test instanceof Map<?, ?> testMap ? testMap.get("status") : null;
+      if (!REPEATABLE_STATUSES.contains(status)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Hashes everything that decides the outcome of a run.
+   *
+   * @param payload code submitted by the user
+   * @return hex sha-256 key, or null if the problem's tests are not cached
+   */
+  private String resultKey(CodeRecord payload) {
+    CachedProblem problem = this.problemCache.get("Problems/" + payload.name());
+    if (problem == null || payload.code() == null) {
+      return null;
+    }
+    Hasher hasher = Hashing.sha256().newHasher();
+    for (String part :
+        new String[] {
+          payload.name(),
+          payload.language(),
+          payload.version(),
+          String.valueOf(payload.failFast()),
+          normalize(payload.code()),
+          problem.version()
+        }) {
+      // length-prefix each part so different splits of the same bytes never collide
+      String value = String.valueOf(part);
+      hasher.putInt(value.length()).putString(value, StandardCharsets.UTF_8);
+    }
+    return hasher.hash().toString();
+  }
+
+  /**
+   * Normalizes code so edits that cannot change its behaviour map to the same key: line endings are
+   * unified and trailing whitespace is dropped. Indentation is kept since python depends on it.
+   */
+  static String normalize(String code) {
+    String[] lines = code.split("\\r\\n|\\r|\\n", -1);
+    StringBuilder normalized = new StringBuilder(code.length());
+    for (String line : lines) {
+      normalized.append(line.stripTrailing()).append('\n');
+    }
+    return normalized.toString().strip();
+  }
+}
@@ -0,0 +1,260 @@
+package edu.brown.cs.student.code_engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Predicate;
+
+/**
+ * Separates what a run printed into the program's own output and the harness's result frames, in
+ * one pass over the characters. The harness prints one frame per test as soon as the test ends:
+ *
+ * <pre>
+ * #DDv1 &lt;nonce&gt; &lt;index&gt; &lt;status&gt; &lt;elapsedMicros&gt; &lt;length&gt;:&lt;json&gt;\n
+ * </pre>
+ *
+ * The json value is ascii, so its length is the same in bytes and in characters, and it is read by
+ * length instead of searched for a terminator: values may contain anything, including text that
+ * looks like a frame. The nonce is new for every run, so the submitted code cannot print frames of
+ * its own. Text that only starts like a frame is kept as output.
+ *
+ * <p>Output can be fed in chunks as it arrives; nothing is buffered but the current line and frame.
+ * Engines that watch a run while it goes can stop it as soon as a result makes further tests
+ * pointless, see {@link #accept(CharSequence)}.
+ */
+public class ResultFrameParser {
+  /** Version of the frame format, the first token of every frame. */
+  public static final String VERSION = "#DDv1";
+
+  // longest "index status elapsed length" header, well past any real one
+  private static final int MAX_HEADER_LENGTH = 64;
+
+  private enum State {
+    TEXT,
+    HEADER,
+    VALUE,
+    END
+  }
+
+  private final String marker;
+  private final TestResult[] results;
+  private final Predicate<TestResult> stopAfter;
+  private final List<String> output = new ArrayList<>();
+  private final StringBuilder line = new StringBuilder();
+  private final StringBuilder header = new StringBuilder();
+  private final StringBuilder value = new StringBuilder();
+
+  private State state = State.TEXT;
+  // characters of the marker matched so far; '#' only starts the marker, so no backtracking
+  private int matched;
+  private int remaining;
+  private int frameIndex;
+  private String frameStatus;
+  private long frameMicros;
+  private boolean stopped;
+
+  /**
+   * @param nonce nonce of the run, as given to the harness
+   * @param testCount number of tests the harness runs
+   */
+  public ResultFrameParser(String nonce, int testCount) {
+    this(nonce, testCount, result -> false);
+  }
+
+  /**
+   * @param nonce nonce of the run, as given to the harness
+   * @param testCount number of tests the harness runs
+   * @param stopAfter whether the run can be stopped once a result has been reported
+   */
+  public ResultFrameParser(String nonce, int testCount, Predicate<TestResult> stopAfter) {
+    this.marker = VERSION + " " + nonce + " ";
+    this.results = new TestResult[testCount];
+    this.stopAfter = stopAfter;
+  }
+
+  /**
+   * @return a new random nonce for a run
+   */
+  public static String newNonce() {
+    return Long.toHexString(ThreadLocalRandom.current().nextLong() | Long.MIN_VALUE);
+  }
+
+  /**
+   * Parses the whole output of a run.
+   *
+   * @param output what the run printed
+   * @param nonce nonce of the run
+   * @param testCount number of tests the harness runs
+   * @return the program's output lines and the result of every test
+   */
+  public static Parsed parse(String output, String nonce, int testCount) {
+    ResultFrameParser parser = new ResultFrameParser(nonce, testCount);
+    parser.accept(output);
+    return parser.finish();
+  }
+
+  /**
+   * Parses the next chunk of output.
+   *
+   * @param chunk the characters printed after the previous chunk
+   * @return false once a reported result asked for the run to stop; the rest of the run's output
+   *     can then be dropped
+   */
+  public boolean accept(CharSequence chunk) {
+    int length = chunk.length();
+    for (int i = 0; i < length; i++) {
+      char c = chunk.charAt(i);
+      switch (this.state) {
+        case TEXT -> this.text(c);
+        case HEADER -> this.header(c);
+        case VALUE -> {
+          // the value is copied as a block, never looked at
+          int count = Math.min(this.remaining, length - i);
+          this.value.append(chunk, i, i + count);
+          this.remaining -= count;
+          i += count - 1;
+          if (this.remaining == 0) {
+            this.state = State.END;
+          }
+        }
+        case END -> this.end(c);
+      }
+    }
+    return !this.stopped;
+  }
+
+  /**
+   * @return whether a reported result asked for the run to stop
+   */
+  public boolean stopped() {
+    return this.stopped;
+  }
+
+  /**
+   * Ends the output. A frame cut off by the end of the output is kept as text, and tests without a
+   * frame are reported {@link TestResult#MISSING}.
+   *
+   * @return the program's output lines and the result of every test
+   */
+  public Parsed finish() {
+    switch (this.state) {
+      case END -> this.record(); // only the final newline is missing
+      case HEADER, VALUE -> this.reject();
+      case TEXT -> this.line.append(this.marker, 0, this.matched);
+    }
+    this.state = State.TEXT;
+    this.matched = 0;
+    if (this.line.length() > 0) {
+      this.output.add(this.line.toString());
+      this.line.setLength(0);
+    }
+    int frames = 0;
+    TestResult[] complete = Arrays.copyOf(this.results, this.results.length);
+    for (int i = 0; i < complete.length; i++) {
+      if (complete[i] == null) {
+        complete[i] = TestResult.missing(i);
+      } else {
+        frames++;
+      }
+    }
+    return new Parsed(List.copyOf(this.output), List.of(complete), frames);
+  }
+
+  private void text(char c) {
+    if (c == this.marker.charAt(this.matched)) {
+      if (++this.matched == this.marker.length()) {
+        this.matched = 0;
+        this.header.setLength(0);
+        this.state = State.HEADER;
+      }
+      return;
+    }
+    if (this.matched > 0) {
+      // not a frame after all: what looked like its start is output
+      this.line.append(this.marker, 0, this.matched);
+      this.matched = c == '#' ? 1 : 0;
+      if (this.matched == 1) {
+        return;
+      }
+    }
+    if (c == '\n') {
+      this.output.add(this.line.toString());
+      this.line.setLength(0);
+    } else if (c != '\r') {
+      this.line.append(c);
+    }
+  }
+
+  private void header(char c) {
+    if (c != ':') {
+      if (c == '\n' || this.header.length() >= MAX_HEADER_LENGTH) {
+        this.reject();
+        this.text(c);
+      } else {
+        this.header.append(c);
+      }
+      return;
+    }
+    String[] fields = this.header.toString().split(" ");
+    try {
+      if (fields.length != 4 || fields[3].startsWith("-")) {
+        throw new NumberFormatException(this.header.toString());
+      }
+      this.frameIndex = Integer.parseInt(fields[0]);
+      this.frameStatus = fields[1];
+      this.frameMicros = Long.parseLong(fields[2]);
+      this.remaining = Integer.parseInt(fields[3]);
+    } catch (NumberFormatException e) {
+      this.reject();
+      this.text(c);
+      return;
+    }
+    this.value.setLength(0);
+    this.state = this.remaining == 0 ? State.END : State.VALUE;
+  }
+
+  private void end(char c) {
+    if (c == '\r') {
+      return;
+    }
+    if (c == '\n') {
+      this.record();
+      this.state = State.TEXT;
+    } else {
+      // the value was not as long as its header said
+      this.reject();
+      this.text(c);
+    }
+  }
+
+  private void record() {
+    if (this.frameIndex >= 0
+        && this.frameIndex < this.results.length
+        && this.results[this.frameIndex] == null) {
+      TestResult result =
+          new TestResult(
+              this.frameIndex, this.frameStatus, this.frameMicros, this.value.toString());
+      this.results[this.frameIndex] = result;
+      this.stopped |= this.stopAfter.test(result);
+    } else {
+      System.out.println("__RESULT_FRAME_ERR__: unexpected frame for test " + this.frameIndex);
+    }
+  }
+
+  /** Puts back everything read of a malformed frame as output text. */
+  private void reject() {
+    this.line.append(this.marker).append(this.header);
+    if (this.state == State.VALUE || this.state == State.END) {
+      this.line.append(':').append(this.value);
+    }
+    this.state = State.TEXT;
+  }
+
+  /**
+   * @param output the program's own output, line by line
+   * @param results the result of every test, in test order
+   * @param frames number of tests the harness reported
+   */
+  public record Parsed(List<String> output, List<TestResult> results, int frames) {}
+}
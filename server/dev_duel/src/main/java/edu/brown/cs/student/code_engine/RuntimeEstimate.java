@@ -0,0 +1,61 @@
+package edu.brown.cs.student.code_engine;
+
+/**
+ * RuntimeEstimate keeps exponentially weighted moving averages of how long one test of a problem
+ * takes in one language, and of what a run costs around its tests (start-up, compilation, process
+ * creation). Code engines use it to decide how many shards a problem's tests are split into, so
+ * that every shard is expected to finish within a time budget. Until a run has been measured the
+ * tests are not split.
+ */
+public class RuntimeEstimate {
+  // weight of the newest sample; recent runs matter most, one slow run does not
+  private static final double ALPHA = 0.2;
+
+  private double testMicros = -1;
+  private double overheadMicros = -1;
+
+  /**
+   * @param micros time one test took
+   */
+  public synchronized void recordTest(long micros) {
+    this.testMicros = average(this.testMicros, micros);
+  }
+
+  /**
+   * @param micros time a run took apart from its tests
+   */
+  public synchronized void recordOverhead(long micros) {
+    this.overheadMicros = average(this.overheadMicros, Math.max(0, micros));
+  }
+
+  /**
+   * @return average time of one test, or -1 if none has been measured
+   */
+  public synchronized double testMicros() {
+    return this.testMicros;
+  }
+
+  /**
+   * Decides how many shards to split the tests into: as few as keep each shard's expected time, its
+   * overhead plus its tests, within the budget.
+   *
+   * @param testCount number of tests of the problem
+   * @param budgetMicros time a shard should take at most
+   * @param maxShards most shards a single submission may use
+   * @return number of shards, at least 1 and at most maxShards and testCount
+   */
+  public synchronized int shardCount(int testCount, long budgetMicros, int maxShards) {
+    if (this.testMicros < 0 || testCount <= 1 || maxShards <= 1) {
+      return 1;
+    }
+    double forTests = budgetMicros - Math.max(0, this.overheadMicros);
+    long testsPerShard =
+        forTests <= this.testMicros ? 1 : (long) (forTests / Math.max(1, this.testMicros));
+    long shards = (testCount + testsPerShard - 1) / testsPerShard;
+    return (int) Math.max(1, Math.min(shards, Math.min(maxShards, testCount)));
+  }
+
+  private static double average(double current, long sample) {
+    return current < 0 ? sample : current + ALPHA * (sample - current);
+  }
+}
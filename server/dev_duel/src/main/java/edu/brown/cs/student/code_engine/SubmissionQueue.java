@@ -0,0 +1,129 @@
+package edu.brown.cs.student.code_engine;
+
+import edu.brown.cs.student.storage.CacheStorage;
+import edu.brown.cs.student.util.AdapterRecords.CodeRecord;
+import edu.brown.cs.student.util.JsonUtil;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * SubmissionQueue decouples code runs from the request threads. Submissions are enqueued as jobs
+ * and run by a bounded pool of workers against the wrapped code engine; callers get a job ID back
+ * immediately and collect the result later with {@link #awaitResult(String, long)}. When every
+ * worker is busy and the wait queue is full, new submissions are rejected instead of piling up.
+ */
+public class SubmissionQueue {
+  private final ICodeEngineApi engine;
+  private final ThreadPoolExecutor executor;
+  private final CacheStorage<CompletableFuture<Map<String, Object>>> jobs;
+
+  /**
+   * @param engine code engine the jobs are run against
+   * @param workers number of jobs that may run at the same time
+   * @param capacity number of jobs that may wait for a free worker
+   */
+  public SubmissionQueue(ICodeEngineApi engine, int workers, int capacity) {
+    this.engine = engine;
+    this.executor =
+        new ThreadPoolExecutor(
+            workers,
+            workers,
+            0L,
+            TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(capacity),
+            new WorkerThreadFactory(),
+            new ThreadPoolExecutor.AbortPolicy());
+    // finished jobs are kept around long enough for the client to collect them.
+    this.jobs = new CacheStorage<>(Math.max(1000, (workers + capacity) * 4), 10);
+  }
+
+  /**
+   * Enqueues a code run.
+   *
+   * @param payload code submitted by the user
+   * @return the ID the result can be collected with
+   * @throws RejectedExecutionException if the queue is full
+   */
+  public String submit(CodeRecord payload) throws RejectedExecutionException {
+    String jobID = UUID.randomUUID().toString();
+    CompletableFuture<Map<String, Object>> job = new CompletableFuture<>();
+    this.executor.execute(
+        () -> {
+          try {
+            job.complete(this.engine.runCode(payload));
+          } catch (Exception e) {
+            System.out.println("__SUBMISSION_JOB_ERR__: " + e.getMessage());
+            e.printStackTrace();
+            job.complete(JsonUtil.generateErrorMap("Internal server error."));
+          }
+        });
+    // only register the job once it has been accepted by the executor
+    this.jobs.put(jobID, job);
+    return jobID;
+  }
+
+  /**
+   * Waits for the result of a job.
+   *
+   * @param jobID the ID returned by submit
+   * @param timeoutMillis maximum time to block waiting for the job to finish
+   * @return a copy of the runCode response map, or null if the job is still running
+   * @throws IllegalArgumentException if no job with this ID is known
+   */
+  public Map<String, Object> awaitResult(String jobID, long timeoutMillis)
+      throws IllegalArgumentException, InterruptedException {
+    CompletableFuture<Map<String, Object>> job = this.jobs.get(jobID);
+    if (job == null) {
+      throw new IllegalArgumentException("No job found for [jobID: " + jobID + "]");
+    }
+    try {
+      // copy so handlers can decorate the response without touching the stored result
+      return new HashMap<>(job.get(timeoutMillis, TimeUnit.MILLISECONDS));
+    } catch (TimeoutException e) {
+      return null;
+    } catch (ExecutionException e) {
+      return JsonUtil.generateErrorMap("Internal server error.");
+    }
+  }
+
+  /**
+   * @return number of jobs waiting for a free worker
+   */
+  public int queueDepth() {
+    return this.executor.getQueue().size();
+  }
+
+  /**
+   * @return number of jobs currently being run
+   */
+  public int activeJobs() {
+    return this.executor.getActiveCount();
+  }
+
+  /** Stops accepting jobs and lets the ones already queued finish. */
+  public void shutdown() {
+    this.executor.shutdown();
+  }
+
+  /** Names worker threads and marks them as daemons so they never keep the server alive. */
+  private static class WorkerThreadFactory implements ThreadFactory {
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "submission-worker-" + this.count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
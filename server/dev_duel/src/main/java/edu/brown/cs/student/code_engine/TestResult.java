@@ -0,0 +1,63 @@
+package edu.brown.cs.student.code_engine;
+
+import edu.brown.cs.student.util.JsonUtil;
+import java.io.IOException;
+
+/**
+ * The result of one test of a run, as reported by the harness in one result frame.
+ *
+ * @param index index of the test
+ * @param status {@link #OK} if the call returned, {@link #ERROR} if it threw, {@link #TIMEOUT} if
+ *     it was stopped for running too long, {@link #MISSING} if the run ended before reporting it,
+ *     {@link #SKIPPED} if a fail-fast run stopped before trying it
+ * @param elapsedMicros time the call took
+ * @param value the returned value as json, or the error message as a json string
+ */
+public record TestResult(int index, String status, long elapsedMicros, String value) {
+  public static final String OK = "ok";
+  public static final String ERROR = "error";
+  public static final String TIMEOUT = "timeout";
+  public static final String MISSING = "missing";
+  public static final String SKIPPED = "skipped";
+
+  /**
+   * @param index index of the test
+   * @return the result of a test the run never reported
+   */
+  public static TestResult missing(int index) {
+    return new TestResult(index, MISSING, 0, "null");
+  }
+
+  /**
+   * @param index index of the test
+   * @return the result of a test a fail-fast run stopped before trying
+   */
+  public static TestResult skipped(int index) {
+    return new TestResult(index, SKIPPED, 0, "null");
+  }
+
+  /**
+   * @return whether the call returned a value
+   */
+  public boolean ok() {
+    return OK.equals(this.status);
+  }
+
+  /**
+   * Returns the value the way it is scored and shown: strings without their quotes and escapes,
+   * anything else as its json.
+   *
+   * @return the value as text
+   */
+  public String text() {
+    if (this.value.isEmpty() || this.value.charAt(0) != '"') {
+      return this.value;
+    }
+    try {
+      String decoded = JsonUtil.toObject(this.value, String.class);
+      return decoded == null ? this.value : decoded;
+    } catch (IOException e) {
+      return this.value;
+    }
+  }
+}
@@ -0,0 +1,188 @@
+package edu.brown.cs.student.code_engine;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * TokenBucket limits the rate of outgoing requests shared by every caller of a code engine. Tokens
+ * refill at a fixed rate up to a burst size; a caller that finds no token waits in a single first
+ * come, first served queue and is handed a token as soon as one refills, without holding a thread.
+ * When the queue is full new callers are turned away at once. A rate limited answer from the engine
+ * pauses the whole bucket, so callers back off together instead of each retrying on its own.
+ */
+public class TokenBucket {
+  private final double permitsPerNano;
+  private final int burst;
+  private final int maxQueue;
+  private final LongSupplier nanoClock;
+  private final ScheduledExecutorService scheduler;
+  private final ArrayDeque<Waiter> queue = new ArrayDeque<>();
+
+  private double tokens;
+  private long refilledAt;
+  private long pausedUntil;
+  private boolean drainScheduled = false;
+
+  private long granted = 0;
+  private long rejected = 0;
+  private long totalWaitNanos = 0;
+  private long maxWaitNanos = 0;
+
+  /** A caller waiting for a token, with the time it started waiting. */
+  private record Waiter(CompletableFuture<Void> permit, long since) {}
+
+  /**
+   * @param permitsPerSecond rate tokens refill at, the quota of the engine
+   * @param burst most tokens the bucket holds, the requests that may be sent at once
+   * @param maxQueue most callers that may wait for a token
+   */
+  public TokenBucket(double permitsPerSecond, int burst, int maxQueue) {
+    this(
+        permitsPerSecond,
+        burst,
+        maxQueue,
+        System::nanoTime,
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "token-bucket");
+              thread.setDaemon(true);
+              return thread;
+            }));
+  }
+
+  /**
+   * @param nanoClock source of the current time in nanoseconds, {@link System#nanoTime} outside
+   *     tests
+   * @param scheduler runs the hand-outs to waiting callers
+   */
+  TokenBucket(
+      double permitsPerSecond,
+      int burst,
+      int maxQueue,
+      LongSupplier nanoClock,
+      ScheduledExecutorService scheduler) {
+    this.permitsPerNano = permitsPerSecond / 1_000_000_000.0;
+    this.burst = burst;
+    this.maxQueue = maxQueue;
+    this.nanoClock = nanoClock;
+    this.scheduler = scheduler;
+    this.tokens = burst;
+    this.refilledAt = nanoClock.getAsLong();
+    this.pausedUntil = this.refilledAt;
+  }
+
+  /**
+   * Takes a token, waiting in line behind earlier callers if there is none.
+   *
+   * @return future completing once the caller holds a token, or failing with a
+   *     RejectedExecutionException if the wait queue is full
+   */
+  public CompletableFuture<Void> acquire() {
+    synchronized (this) {
+      long now = this.nanoClock.getAsLong();
+      this.refill(now);
+      if (this.queue.isEmpty() && now >= this.pausedUntil && this.tokens >= 1) {
+        this.tokens -= 1;
+        this.recordGrant(0);
+        return CompletableFuture.completedFuture(null);
+      }
+      if (this.queue.size() >= this.maxQueue) {
+        this.rejected++;
+        return CompletableFuture.failedFuture(
+            new RejectedExecutionException("Rate limit queue is full"));
+      }
+      Waiter waiter = new Waiter(new CompletableFuture<>(), now);
+      this.queue.add(waiter);
+      this.scheduleDrain(now);
+      return waiter.permit();
+    }
+  }
+
+  /**
+   * Stops handing out tokens for a while and empties the bucket, e.g. after the engine answered
+   * that it is rate limited.
+   *
+   * @param millis time to hand out no tokens for
+   */
+  public synchronized void pause(long millis) {
+    long now = this.nanoClock.getAsLong();
+    this.refill(now);
+    this.tokens = 0;
+    this.pausedUntil = Math.max(this.pausedUntil, now + TimeUnit.MILLISECONDS.toNanos(millis));
+    this.refilledAt = Math.max(this.refilledAt, this.pausedUntil);
+  }
+
+  /**
+   * @return queue depth, tokens granted and rejected, and how long callers waited for a token
+   */
+  public synchronized Map<String, Object> stats() {
+    Map<String, Object> statsMap = new HashMap<>();
+    statsMap.put("queueDepth", this.queue.size());
+    statsMap.put("granted", this.granted);
+    statsMap.put("rejected", this.rejected);
+    statsMap.put(
+        "averageWaitMillis",
+        this.granted == 0 ? 0.0 : this.totalWaitNanos / (double) this.granted / 1_000_000.0);
+    statsMap.put("maxWaitMillis", this.maxWaitNanos / 1_000_000.0);
+    statsMap.put(
+        "pausedMillis", Math.max(0, (this.pausedUntil - this.nanoClock.getAsLong()) / 1_000_000));
+    return statsMap;
+  }
+
+  /** Adds the tokens refilled since the last refill, none while the bucket is paused. */
+  private void refill(long now) {
+    if (now > this.refilledAt) {
+      this.tokens =
+          Math.min(this.burst, this.tokens + (now - this.refilledAt) * this.permitsPerNano);
+      this.refilledAt = now;
+    }
+  }
+
+  private void recordGrant(long waitNanos) {
+    this.granted++;
+    this.totalWaitNanos += waitNanos;
+    this.maxWaitNanos = Math.max(this.maxWaitNanos, waitNanos);
+  }
+
+  /** Schedules the next hand-out for when the head of the queue can get a token. */
+  private void scheduleDrain(long now) {
+    if (this.drainScheduled) {
+      return;
+    }
+    this.drainScheduled = true;
+    long delay =
+        Math.max(this.pausedUntil - now, (long) Math.ceil((1 - this.tokens) / this.permitsPerNano));
+    this.scheduler.schedule(this::drain, Math.max(0, delay), TimeUnit.NANOSECONDS);
+  }
+
+  /** Hands tokens to the waiting callers in order, then completes them outside the lock. */
+  private void drain() {
+    List<CompletableFuture<Void>> ready = new ArrayList<>();
+    synchronized (this) {
+      this.drainScheduled = false;
+      long now = this.nanoClock.getAsLong();
+      this.refill(now);
+      while (!this.queue.isEmpty() && now >= this.pausedUntil && this.tokens >= 1) {
+        Waiter waiter = this.queue.poll();
+        this.tokens -= 1;
+        this.recordGrant(now - waiter.since());
+        ready.add(waiter.permit());
+      }
+      if (!this.queue.isEmpty()) {
+        this.scheduleDrain(now);
+      }
+    }
+    for (CompletableFuture<Void> permit : ready) {
+      permit.complete(null);
+    }
+  }
+}
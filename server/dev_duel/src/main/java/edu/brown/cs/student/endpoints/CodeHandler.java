@@ -1,20 +1,24 @@
 package edu.brown.cs.student.endpoints;
 
-import edu.brown.cs.student.code_engine.ICodeEngineApi;
+import edu.brown.cs.student.code_engine.SubmissionQueue;
 import edu.brown.cs.student.util.AdapterRecords.CodeRecord;
 import edu.brown.cs.student.util.JsonUtil;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 import spark.Request;
 import spark.Response;
 import spark.Route;
 
-/** Handles code submitted by user by querying piston api checking test cases */
+/**
+ * Handles code submitted by user by enqueueing it on the submission queue. The response carries the
+ * jobID the tests and score can be collected with from the runresult endpoint.
+ */
 public class CodeHandler implements Route {
-  private final ICodeEngineApi datasource;
+  private final SubmissionQueue submissions;
 
-  public CodeHandler(ICodeEngineApi datasource) {
-    this.datasource = datasource;
+  public CodeHandler(SubmissionQueue submissions) {
+    this.submissions = submissions;
   }
 
   @Override
@@ -32,7 +36,16 @@ public class CodeHandler implements Route {
 
     CodeRecord codeRecord = JsonUtil.toObject(requestBody, CodeRecord.class);
 
-    responseMap = this.datasource.runCode(codeRecord);
+    try {
+      String jobID = this.submissions.submit(codeRecord);
+      responseMap.put("response_type", "queued");
+      responseMap.put("jobID", jobID);
+    } catch (RejectedExecutionException e) {
+      System.out.println("__SUBMISSION_QUEUE_FULL_ERR__: " + e.getMessage());
+      response.status(503);
+      responseMap = JsonUtil.generateErrorMap("Submission queue is full. Try again shortly.");
+      responseMap.put("queue_full", true);
+    }
     responseMap.put("requestInfo", requestInfo);
     return JsonUtil.toMoshiJson(responseMap);
   }
@@ -1,5 +1,7 @@
 package edu.brown.cs.student.endpoints;
 
+import edu.brown.cs.student.code_engine.CachedProblem;
+import edu.brown.cs.student.code_engine.HarnessTemplateCache;
 import edu.brown.cs.student.storage.CacheStorage;
 import edu.brown.cs.student.storage.IStorage;
 import edu.brown.cs.student.util.AdapterRecords.TestRecord;
@@ -15,11 +17,14 @@ import spark.Route;
 public class GetProblemsHandler implements Route {
 
   private final IStorage db;
-  private final CacheStorage<Map<String, String>> cache;
+  private final CacheStorage<CachedProblem> cache;
+  private final HarnessTemplateCache harnessTemplates;
 
-  public GetProblemsHandler(IStorage db, CacheStorage<Map<String, String>> cache) {
+  public GetProblemsHandler(
+      IStorage db, CacheStorage<CachedProblem> cache, HarnessTemplateCache harnessTemplates) {
     this.db = db;
     this.cache = cache;
+    this.harnessTemplates = harnessTemplates;
   }
 
   @Override
@@ -92,19 +97,18 @@ public class GetProblemsHandler implements Route {
     for (Map<String, Object> problem : problems) {
       String key = "Problems/" + problem.get("name").toString();
 
-      // cache tests for retrieved problem
-      Object tesObject = problem.get("tests");
-      String testString = JsonUtil.toMoshiJson(tesObject);
-      List<TestRecord> testsList = JsonUtil.toObjectList(testString, TestRecord.class);
-      Map<String, String> toCache =
-          Map.of(
-              "test",
-              testString,
-              "expectExact",
-              problem.get("expectExact").toString(),
-              "returnType",
-              problem.get("returnType").toString());
+      // cache tests for retrieved problem, parsing everything judging needs once. An entry with
+      // the same tests is kept, with the harnesses it already built; otherwise they are built now,
+      // before the first submission needs them
+      CachedProblem toCache = CachedProblem.fromDocument(problem);
+      CachedProblem cached = this.cache.asMap().get(key);
+      if (cached != null && cached.version().equals(toCache.version())) {
+        toCache = cached;
+      } else {
+        this.harnessTemplates.warm(toCache);
+      }
       this.cache.put(key, toCache);
+      List<TestRecord> testsList = toCache.tests();
 
       // send at most three sample tests to the frontend.
       List<TestRecord> sampleTests = new ArrayList<>();
@@ -0,0 +1,57 @@
+package edu.brown.cs.student.endpoints;
+
+import edu.brown.cs.student.code_engine.CachedProblem;
+import edu.brown.cs.student.code_engine.PistonCodeEngineApi;
+import edu.brown.cs.student.code_engine.SubmissionQueue;
+import edu.brown.cs.student.storage.CacheStorage;
+import edu.brown.cs.student.storage.WriteBehindStorage;
+import edu.brown.cs.student.util.JsonUtil;
+import java.util.HashMap;
+import java.util.Map;
+import spark.Request;
+import spark.Response;
+import spark.Route;
+
+/**
+ * Reports problem cache statistics, submission queue load, batched room writes and the piston rate
+ * limiter and circuit breaker, e.g. to measure cold loads.
+ */
+public class MetricsHandler implements Route {
+  private final CacheStorage<CachedProblem> problemCache;
+  private final SubmissionQueue submissionQueue;
+  private final WriteBehindStorage roomWrites;
+  private final PistonCodeEngineApi piston;
+
+  /**
+   * @param piston piston code engine, or null if submissions are run elsewhere
+   */
+  public MetricsHandler(
+      CacheStorage<CachedProblem> problemCache,
+      SubmissionQueue submissionQueue,
+      WriteBehindStorage roomWrites,
+      PistonCodeEngineApi piston) {
+    this.problemCache = problemCache;
+    this.submissionQueue = submissionQueue;
+    this.roomWrites = roomWrites;
+    this.piston = piston;
+  }
+
+  @Override
+  public Object handle(Request request, Response response) throws Exception {
+    System.out.println("GET: " + request.url());
+    Map<String, Object> submissions = new HashMap<>();
+    submissions.put("queueDepth", this.submissionQueue.queueDepth());
+    submissions.put("activeJobs", this.submissionQueue.activeJobs());
+
+    Map<String, Object> responseMap = new HashMap<>();
+    responseMap.put("response_type", "success");
+    responseMap.put("problemCache", this.problemCache.stats());
+    responseMap.put("submissions", submissions);
+    responseMap.put("roomWrites", this.roomWrites.stats());
+    if (this.piston != null) {
+      responseMap.put("piston", this.piston.stats());
+    }
+    responseMap.put("requestInfo", JsonUtil.requestInfoMap(request.url()));
+    return JsonUtil.toMoshiJson(responseMap);
+  }
+}
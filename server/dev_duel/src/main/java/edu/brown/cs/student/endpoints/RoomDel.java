@@ -1,6 +1,7 @@
 package edu.brown.cs.student.endpoints;
 
 import edu.brown.cs.student.storage.IStorage;
+import edu.brown.cs.student.storage.RoomRegistry;
 import edu.brown.cs.student.util.JsonUtil;
 import java.util.HashMap;
 import java.util.Map;
@@ -13,9 +14,11 @@ import spark.Route;
 public class RoomDel implements Route {
 
   private IStorage storageManager;
+  private RoomRegistry roomRegistry;
 
-  public RoomDel(IStorage storage) {
+  public RoomDel(IStorage storage, RoomRegistry roomRegistry) {
     this.storageManager = storage;
+    this.roomRegistry = roomRegistry;
   }
 
   @Override
@@ -38,6 +41,7 @@ public class RoomDel implements Route {
                 + "] not found. Check spelling or if the room exists");
       }
       this.storageManager.deleteDocument("Rooms", roomID); // delete the document
+      this.roomRegistry.remove(roomID);
       responseMap.put("data", data); // save the data just to return for the user
       responseMap.put("response_type", "success");
     } catch (IllegalArgumentException | InterruptedException | ExecutionException e) {
@@ -2,6 +2,7 @@ package edu.brown.cs.student.endpoints;
 
 import edu.brown.cs.student.storage.IStorage;
 import edu.brown.cs.student.util.JsonUtil;
+import edu.brown.cs.student.util.QueryParams;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
@@ -31,7 +32,8 @@ public class RoomInfo implements Route {
         throw new IllegalArgumentException("Must specify roomID");
       }
       // retrieve the user doc
-      Map<String, Object> data = this.storageManager.getDocument("Rooms", roomID);
+      Map<String, Object> data =
+          this.storageManager.getDocument("Rooms", roomID, QueryParams.fields(request));
       if (data == null) { // check to make sure something was retrieved. getDocument for firestore
         // returns null if nothing
         throw new IllegalArgumentException(
@@ -1,17 +1,23 @@
 package edu.brown.cs.student.endpoints;
 
 import edu.brown.cs.student.storage.IStorage;
+import edu.brown.cs.student.storage.Page;
 import edu.brown.cs.student.util.JsonUtil;
+import edu.brown.cs.student.util.QueryParams;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
 import spark.Request;
 import spark.Response;
 import spark.Route;
 
-/** This class lists the rooms in a database */
+/**
+ * This class lists the rooms in a database, one page at a time. Takes optional limit (page size,
+ * 100 by default) and cursor (the nextCursor of the previous page) parameters.
+ */
 public class RoomList implements Route {
+  private static final int DEFAULT_PAGE_SIZE = 100;
+  private static final int MAX_PAGE_SIZE = 500;
 
   private IStorage storageManager;
 
@@ -24,9 +30,15 @@ public class RoomList implements Route {
     Map<String, Object> responseMap = new HashMap<>();
 
     try {
-      List<Map<String, Object>> rooms = this.storageManager.getCollection("Rooms");
-      responseMap.put("data", rooms); // note this can return an empty list of rooms!
+      Page rooms =
+          this.storageManager.getCollectionPage(
+              "Rooms",
+              QueryParams.fields(request),
+              QueryParams.limit(request, DEFAULT_PAGE_SIZE, MAX_PAGE_SIZE),
+              request.queryParams("cursor"));
+      responseMap.put("data", rooms.documents()); // note this can return an empty list of rooms!
       // This is intentional as sometimes there are no rooms
+      responseMap.put("nextCursor", rooms.nextCursor()); // null on the last page
 
       responseMap.put("response_type", "success");
     } catch (IllegalArgumentException | InterruptedException | ExecutionException e) {
@@ -34,6 +46,7 @@ public class RoomList implements Route {
       responseMap.put("error", e.toString());
       e.printStackTrace();
     }
-    return JsonUtil.toMoshiJson(responseMap);
+    // streamed, since the documents can be large
+    return JsonUtil.writeMoshiJson(response, responseMap);
   }
 }
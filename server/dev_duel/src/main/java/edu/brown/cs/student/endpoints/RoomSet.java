@@ -1,6 +1,7 @@
 package edu.brown.cs.student.endpoints;
 
 import edu.brown.cs.student.storage.IStorage;
+import edu.brown.cs.student.storage.RoomRegistry;
 import edu.brown.cs.student.util.JsonUtil;
 import java.util.HashMap;
 import java.util.Map;
@@ -19,9 +20,11 @@ import spark.Route;
 public class RoomSet implements Route {
 
   private IStorage storageManager;
+  private RoomRegistry roomRegistry;
 
-  public RoomSet(IStorage storage) {
+  public RoomSet(IStorage storage, RoomRegistry roomRegistry) {
     this.storageManager = storage;
+    this.roomRegistry = roomRegistry;
   }
 
   @Override
@@ -72,6 +75,8 @@ public class RoomSet implements Route {
 
       responseMap.put("data", data);
       this.storageManager.updateDocument("Rooms", roomID, data);
+      // push the change to the clients watching the lobby or this room
+      this.roomRegistry.update(roomID, data);
       responseMap.put("response_type", "success");
     } catch (IllegalArgumentException e) {
       responseMap.put("response_type", "failure");
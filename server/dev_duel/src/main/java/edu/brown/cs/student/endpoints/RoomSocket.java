@@ -0,0 +1,76 @@
+package edu.brown.cs.student.endpoints;
+
+import edu.brown.cs.student.storage.RoomRegistry;
+import edu.brown.cs.student.util.JsonUtil;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.annotations.OnWebSocketClose;
+import org.eclipse.jetty.websocket.api.annotations.OnWebSocketConnect;
+import org.eclipse.jetty.websocket.api.annotations.OnWebSocketMessage;
+import org.eclipse.jetty.websocket.api.annotations.WebSocket;
+
+/**
+ * WebSocket endpoint pushing room changes from the {@link RoomRegistry}. Clients send
+ * {"action":"subscribe","topic":"lobby"} or {"action":"subscribe","topic":"room:<roomID>"} (and
+ * "unsubscribe" likewise), and receive a snapshot of the topic followed by every change to it.
+ */
+@WebSocket
+public class RoomSocket {
+  private final RoomRegistry registry;
+  // one registry subscriber per connection, so it can be removed when the connection closes
+  private final ConcurrentMap<Session, Consumer<String>> subscribers = new ConcurrentHashMap<>();
+
+  public RoomSocket(RoomRegistry registry) {
+    this.registry = registry;
+  }
+
+  @OnWebSocketConnect
+  public void onConnect(Session session) {
+    this.subscribers.put(
+        session,
+        message -> {
+          if (session.isOpen()) {
+            // asynchronous, so a slow client never holds up the room update that published this
+            session.getRemote().sendStringByFuture(message);
+          }
+        });
+  }
+
+  @OnWebSocketClose
+  public void onClose(Session session, int statusCode, String reason) {
+    Consumer<String> subscriber = this.subscribers.remove(session);
+    if (subscriber != null) {
+      this.registry.unsubscribeAll(subscriber);
+    }
+  }
+
+  @OnWebSocketMessage
+  public void onMessage(Session session, String message) {
+    Consumer<String> subscriber = this.subscribers.get(session);
+    Map<String, Object> request = JsonUtil.toMap(message);
+    if (subscriber == null || request == null) {
+      return;
+    }
+    Object action = request.get("action");
+    Object topic = request.get("topic");
+    if (!(topic instanceof String topicString) || !isTopic(topicString)) {
+      subscriber.accept(JsonUtil.toMoshiJson(JsonUtil.generateErrorMap("Unknown topic: " + topic)));
+      return;
+    }
+    if ("subscribe".equals(action)) {
+      this.registry.subscribe(topicString, subscriber);
+    } else if ("unsubscribe".equals(action)) {
+      this.registry.unsubscribe(topicString, subscriber);
+    } else {
+      subscriber.accept(
+          JsonUtil.toMoshiJson(JsonUtil.generateErrorMap("Unknown action: " + action)));
+    }
+  }
+
+  private static boolean isTopic(String topic) {
+    return topic.equals(RoomRegistry.LOBBY) || topic.startsWith(RoomRegistry.roomTopic(""));
+  }
+}
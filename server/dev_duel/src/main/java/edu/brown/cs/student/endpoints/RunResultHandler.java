@@ -0,0 +1,54 @@
+package edu.brown.cs.student.endpoints;
+
+import edu.brown.cs.student.code_engine.SubmissionQueue;
+import edu.brown.cs.student.util.JsonUtil;
+import java.util.HashMap;
+import java.util.Map;
+import spark.Request;
+import spark.Response;
+import spark.Route;
+
+/**
+ * Long-polls the result of a queued code run. The request waits for up to timeout milliseconds
+ * (capped at MAX_TIMEOUT_MS) and answers with the tests/score/output map once the job is done, or
+ * with a pending response so the client can poll again. The wait holds a server thread, so it is
+ * kept short: a run that takes longer costs a few cheap polls instead of a parked thread.
+ */
+public class RunResultHandler implements Route {
+  private static final long DEFAULT_TIMEOUT_MS = 1_000;
+  private static final long MAX_TIMEOUT_MS = 1_000;
+  private final SubmissionQueue submissions;
+
+  public RunResultHandler(SubmissionQueue submissions) {
+    this.submissions = submissions;
+  }
+
+  @Override
+  public Object handle(Request request, Response response) throws Exception {
+    Map<String, String> requestInfo = JsonUtil.requestInfoMap(request.url());
+    String jobID = request.queryParams("jobID");
+    String timeoutParam = request.queryParams("timeout");
+
+    Map<String, Object> responseMap = new HashMap<>();
+    try {
+      if (jobID == null) {
+        throw new IllegalArgumentException("Must specify jobID");
+      }
+      long timeout = timeoutParam != null ? Long.parseLong(timeoutParam) : DEFAULT_TIMEOUT_MS;
+      timeout = Math.max(0, Math.min(timeout, MAX_TIMEOUT_MS));
+
+      Map<String, Object> result = this.submissions.awaitResult(jobID, timeout);
+      if (result == null) {
+        responseMap.put("response_type", "pending");
+        responseMap.put("jobID", jobID);
+      } else {
+        responseMap = result;
+      }
+    } catch (IllegalArgumentException e) {
+      // also covers a malformed timeout through NumberFormatException
+      responseMap = JsonUtil.generateErrorMap(e.getMessage());
+    }
+    responseMap.put("requestInfo", requestInfo);
+    return JsonUtil.toMoshiJson(responseMap);
+  }
+}
@@ -2,6 +2,7 @@ package edu.brown.cs.student.endpoints;
 
 import edu.brown.cs.student.storage.IStorage;
 import edu.brown.cs.student.util.JsonUtil;
+import edu.brown.cs.student.util.QueryParams;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
@@ -31,7 +32,8 @@ public class UserInfo implements Route {
       }
 
       // retrieve the user doc
-      Map<String, Object> data = this.storageManager.getDocument("Users", userID);
+      Map<String, Object> data =
+          this.storageManager.getDocument("Users", userID, QueryParams.fields(request));
       if (data == null) { // check to make sure something was retrieved. getDocument for firestore
         // returns null if nothing
         throw new IllegalArgumentException(
@@ -1,34 +1,49 @@
 package edu.brown.cs.student.endpoints;
 
-import edu.brown.cs.student.storage.IStorage;
+import edu.brown.cs.student.storage.LeaderboardIndex;
+import edu.brown.cs.student.storage.Page;
 import edu.brown.cs.student.util.JsonUtil;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutionException;
 import spark.Request;
 import spark.Response;
 import spark.Route;
 
-/** This class lists the rooms in a database */
+/**
+ * This class lists one page of users ordered by wins, read from the in-memory leaderboard index.
+ * Takes optional limit (page size, 100 by default; k is the older name for it) and either cursor
+ * (the nextCursor of the previous page) or offset (0 by default) parameters.
+ */
 public class UserLeaderboard implements Route {
+  private static final int DEFAULT_PAGE_SIZE = 100;
 
-  private IStorage storageManager;
+  private final LeaderboardIndex leaderboard;
 
-  public UserLeaderboard(IStorage storage) {
-    this.storageManager = storage;
+  public UserLeaderboard(LeaderboardIndex leaderboard) {
+    this.leaderboard = leaderboard;
   }
 
   @Override
   public Object handle(Request request, Response response) throws Exception {
     Map<String, Object> responseMap = new HashMap<>();
+    String limitString = request.queryParams("limit");
+    String kString = limitString == null ? request.queryParams("k") : limitString;
+    String offsetString = request.queryParams("offset");
+    String cursor = request.queryParams("cursor");
 
     try {
-      List<Map<String, Object>> users = this.storageManager.sortCollection("Users", "wins");
-      responseMap.put("data", users); // note this can return an empty list of users!
+      int k = kString == null ? DEFAULT_PAGE_SIZE : Integer.parseInt(kString);
+      int offset = offsetString == null ? 0 : Integer.parseInt(offsetString);
+      if (k < 0 || offset < 0) {
+        throw new IllegalArgumentException("k and offset must not be negative.");
+      }
+      Page users = this.leaderboard.page(k, offset, cursor);
+      responseMap.put("data", users.documents()); // note this can return an empty list of users!
+      responseMap.put("nextCursor", users.nextCursor()); // null on the last page
 
       responseMap.put("response_type", "success");
-    } catch (IllegalArgumentException | InterruptedException | ExecutionException e) {
+    } catch (IllegalArgumentException e) {
+      // NumberFormatException is an IllegalArgumentException
       responseMap.put("response_type", "failure");
       responseMap.put("error", e.toString());
       e.printStackTrace();
@@ -1,17 +1,23 @@
 package edu.brown.cs.student.endpoints;
 
 import edu.brown.cs.student.storage.IStorage;
+import edu.brown.cs.student.storage.Page;
 import edu.brown.cs.student.util.JsonUtil;
+import edu.brown.cs.student.util.QueryParams;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
 import spark.Request;
 import spark.Response;
 import spark.Route;
 
-/** This class lists the rooms in a database */
+/**
+ * This class lists the users in a database, one page at a time. Takes optional limit (page size,
+ * 100 by default) and cursor (the nextCursor of the previous page) parameters.
+ */
 public class UserList implements Route {
+  private static final int DEFAULT_PAGE_SIZE = 100;
+  private static final int MAX_PAGE_SIZE = 500;
 
   private IStorage storageManager;
 
@@ -24,8 +30,15 @@ public class UserList implements Route {
     Map<String, Object> responseMap = new HashMap<>();
 
     try {
-      List<Map<String, Object>> users = this.storageManager.getCollection("Users");
-      responseMap.put("data", users); // note this can return an empty list of users!
+      // fields=userID,displayName sends only those fields of each user
+      Page users =
+          this.storageManager.getCollectionPage(
+              "Users",
+              QueryParams.fields(request),
+              QueryParams.limit(request, DEFAULT_PAGE_SIZE, MAX_PAGE_SIZE),
+              request.queryParams("cursor"));
+      responseMap.put("data", users.documents()); // note this can return an empty list of users!
+      responseMap.put("nextCursor", users.nextCursor()); // null on the last page
 
       responseMap.put("response_type", "success");
     } catch (IllegalArgumentException | InterruptedException | ExecutionException e) {
@@ -33,6 +46,7 @@ public class UserList implements Route {
       responseMap.put("error", e.toString());
       e.printStackTrace();
     }
-    return JsonUtil.toMoshiJson(responseMap);
+    // streamed, since the documents can be large
+    return JsonUtil.writeMoshiJson(response, responseMap);
   }
 }
@@ -0,0 +1,43 @@
+package edu.brown.cs.student.endpoints;
+
+import edu.brown.cs.student.storage.LeaderboardIndex;
+import edu.brown.cs.student.util.JsonUtil;
+import java.util.HashMap;
+import java.util.Map;
+import spark.Request;
+import spark.Response;
+import spark.Route;
+
+/** This class returns the leaderboard place of one user. Takes a userID parameter. */
+public class UserRank implements Route {
+
+  private final LeaderboardIndex leaderboard;
+
+  public UserRank(LeaderboardIndex leaderboard) {
+    this.leaderboard = leaderboard;
+  }
+
+  @Override
+  public Object handle(Request request, Response response) throws Exception {
+    Map<String, Object> responseMap = new HashMap<>();
+    String userID = request.queryParams("userID");
+
+    try {
+      if (userID == null) {
+        throw new IllegalArgumentException("The 'userID' parameter is required.");
+      }
+      Map<String, Object> rank = this.leaderboard.rankOf(userID);
+      if (rank == null) {
+        throw new IllegalArgumentException(
+            "User not found on the leaderboard. Check spelling or if the user exists");
+      }
+      responseMap.put("data", rank);
+      responseMap.put("response_type", "success");
+    } catch (IllegalArgumentException e) {
+      responseMap.put("response_type", "failure");
+      responseMap.put("error", e.toString());
+      e.printStackTrace();
+    }
+    return JsonUtil.toMoshiJson(responseMap);
+  }
+}
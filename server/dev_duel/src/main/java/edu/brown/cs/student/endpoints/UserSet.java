@@ -1,6 +1,7 @@
 package edu.brown.cs.student.endpoints;
 
 import edu.brown.cs.student.storage.IStorage;
+import edu.brown.cs.student.storage.LeaderboardIndex;
 import edu.brown.cs.student.util.JsonUtil;
 import java.util.HashMap;
 import java.util.Map;
@@ -12,9 +13,11 @@ import spark.Route;
 public class UserSet implements Route {
 
   private IStorage storageManager;
+  private LeaderboardIndex leaderboard;
 
-  public UserSet(IStorage storage) {
+  public UserSet(IStorage storage, LeaderboardIndex leaderboard) {
     this.storageManager = storage;
+    this.leaderboard = leaderboard;
   }
 
   @Override
@@ -49,13 +52,10 @@ public class UserSet implements Route {
       data.put("wins", winDouble);
       data.put("startDate", startDate);
 
-      Map<String, Object> currentData = this.storageManager.getDocument("Users", userID);
-      if (currentData != null && currentData.containsKey("code")) {
-        data.put("code", currentData.get("code"));
-      }
+      // a merge, so the fields not set here are kept; the code history lives in Submissions
+      this.storageManager.updateDocument("Users", userID, new HashMap<>(data));
 
-      // puts the data in a document under collection Users and with name User+userID
-      this.storageManager.addDocument("Users", userID, data);
+      this.leaderboard.update(userID, displayName, winDouble);
 
       // returns success and displays the data inputted to make sure
       responseMap.put("response_type", "success");
@@ -0,0 +1,57 @@
+package edu.brown.cs.student.endpoints;
+
+import edu.brown.cs.student.storage.IStorage;
+import edu.brown.cs.student.storage.Page;
+import edu.brown.cs.student.storage.Submissions;
+import edu.brown.cs.student.util.JsonUtil;
+import edu.brown.cs.student.util.QueryParams;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import spark.Request;
+import spark.Response;
+import spark.Route;
+
+/**
+ * This class returns one page of a user's best submissions, one per problem. It takes in a userID,
+ * and optionally limit (default 20, at most 100) and cursor (the nextCursor of the previous page).
+ */
+public class UserSubmissions implements Route {
+  private static final int DEFAULT_LIMIT = 20;
+  private static final int MAX_LIMIT = 100;
+
+  private IStorage storageManager;
+
+  public UserSubmissions(IStorage storage) {
+    this.storageManager = storage;
+  }
+
+  @Override
+  public Object handle(Request request, Response response) throws Exception {
+    Map<String, Object> responseMap = new HashMap<>();
+
+    // collect params
+    String userID = request.queryParams("userID");
+
+    try {
+      if (userID == null) {
+        throw new IllegalArgumentException("Must specify userID");
+      }
+      int limit = QueryParams.limit(request, DEFAULT_LIMIT, MAX_LIMIT);
+
+      Page submissions =
+          this.storageManager.getDocumentsWhere(
+              Submissions.COLLECTION, "userID", userID, limit, request.queryParams("cursor"));
+      responseMap.put("data", submissions.documents());
+      responseMap.put("limit", limit);
+      responseMap.put("nextCursor", submissions.nextCursor()); // null on the last page
+      responseMap.put("response_type", "success");
+    } catch (IllegalArgumentException | InterruptedException | ExecutionException e) {
+      responseMap.put("response_type", "failure");
+      responseMap.put("error", e.toString());
+      e.printStackTrace();
+    }
+    // streamed, since the submissions hold source code
+    return JsonUtil.writeMoshiJson(response, responseMap);
+  }
+}
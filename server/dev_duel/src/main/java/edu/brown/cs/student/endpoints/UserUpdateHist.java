@@ -1,8 +1,13 @@
 package edu.brown.cs.student.endpoints;
 
 import edu.brown.cs.student.storage.IStorage;
+import edu.brown.cs.student.storage.Increment;
+import edu.brown.cs.student.storage.LeaderboardIndex;
+import edu.brown.cs.student.storage.Submissions;
 import edu.brown.cs.student.util.JsonUtil;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
 import spark.Request;
@@ -11,17 +16,27 @@ import spark.Route;
 
 /**
  * This class updates the user code history in a IStorage database. It takes in a userID, problemID
- * date, score, and the code. This class will add the code under the problem if there is no
- * submission for that problem already available. If the user has done that problem before, then it
- * will check to see which submission has a higher score, and choose that one. It will prioritize
- * more recent submissions if they are both equal.
+ * date, score, and the code. This class will store the code in the Submissions collection if there
+ * is no submission for that problem already available. If the user has done that problem before,
+ * then it will check to see which submission has a higher score, and choose that one. It will
+ * prioritize more recent submissions if they are both equal.
+ *
+ * <p>Sending the same request again, e.g. when a client retries after a dropped response, does not
+ * count the win twice: the user document remembers its latest counted wins by problem and date.
  */
 public class UserUpdateHist implements Route {
+  /** Field of the user document holding the keys of the latest counted wins. */
+  public static final String COUNTED_WINS = "countedWins";
+
+  // enough to recognize a retry of any win the user could still be sending
+  private static final int MAX_COUNTED_WINS = 20;
 
   private IStorage storageManager;
+  private LeaderboardIndex leaderboard;
 
-  public UserUpdateHist(IStorage storage) {
+  public UserUpdateHist(IStorage storage, LeaderboardIndex leaderboard) {
     this.storageManager = storage;
+    this.leaderboard = leaderboard;
   }
 
   @Override
@@ -47,87 +62,33 @@ public class UserUpdateHist implements Route {
         throw new IllegalArgumentException("The 'win' parameter must be 'true' or 'false'.");
       }
       boolean win = Boolean.parseBoolean(winString);
-      Double wins;
 
       // makes sure no params are null
       if (userID == null || date == null || score == null || code == null || problemID == null) {
         throw new IllegalArgumentException("One or more required parameters are missing or null.");
       }
 
-      Map<String, Object> data = this.storageManager.getDocument("Users", userID);
-      if (data == null) {
-        throw new IllegalArgumentException(
-            "User document not found. Check spelling or if the user exists");
-      }
-      if (win) { // update wins before anything else
-        if (data.containsKey("wins")) {
-          try {
-            wins = Double.parseDouble(data.get("wins").toString());
-            wins++;
-            data.put("wins", wins);
-          } catch (NumberFormatException e) {
-            throw new InterruptedException("Value of wins in user " + userID + "not a number");
-          }
-        }
-      }
-      if (data.containsKey("code")) {
-        try {
-          // Attempt to cast the value of "code" to a Map
-          Map<String, Object> codeMap = (Map<String, Object>) data.get("code");
-          if (codeMap.containsKey("problem" + problemID)) {
-            // problem already has a code history, must check if we need to update
-            Map<String, Object> problemMap =
-                (Map<String, Object>) codeMap.get("problem" + problemID);
-            if (problemMap.containsKey("score")) {
-              double oldScore = this.fracToDouble(problemMap.get("score").toString());
-              double newScore = this.fracToDouble(score);
-              if (newScore >= oldScore) {
-                problemMap.put("score", score);
-                problemMap.put("code", code);
-                problemMap.put("date", date);
-
-                codeMap.put("problem" + problemID, problemMap);
-                data.put("code", codeMap);
-                this.storageManager.updateDocument("Users", userID, data);
-              } else {
-                // new score not as good as old score, only need to update win
-                this.storageManager.updateDocument("Users", userID, data);
-              }
-            } else {
-              throw new IllegalArgumentException(
-                  "for some reason problem map does not contain field score. Uh oh");
-            }
-          } else {
-            // if the problem doesnt exist, add the entry for this problem
-            Map<String, Object> additionalMap = new HashMap<>();
-            additionalMap.put("code", code);
-            additionalMap.put("date", date);
-            additionalMap.put("score", score);
-
-            codeMap.put("problem" + problemID, additionalMap);
-            data.put("code", codeMap);
-            this.storageManager.updateDocument("Users", userID, data);
-          }
-        } catch (ClassCastException | NullPointerException e) {
-          throw new IllegalArgumentException("'code' exists but is not properly structured.");
-        }
-      } else {
-        // if there is no code field, add one
-        Map<String, Object> codeMap = new HashMap<>();
-        Map<String, Object> problemMap = new HashMap<>();
-
-        problemMap.put("score", score);
-        problemMap.put("code", code);
-        problemMap.put("date", date);
-
-        codeMap.put("problem" + problemID, problemMap);
-        data.put("code", codeMap);
-        this.storageManager.updateDocument("Users", userID, data);
+      // each write is its own transaction, so concurrent submissions of a user cannot overwrite
+      // each other; the user document only gets its wins changed. Both writes can be repeated:
+      // the win is only counted once per problem and date, and the same submission stores the
+      // same document
+      String winKey = problemID + "@" + date;
+      Map<String, Object> data =
+          this.storageManager.transact("Users", userID, user -> this.winChanges(user, win, winKey));
+      Map<String, Object> submission =
+          this.storageManager.transact(
+              Submissions.COLLECTION,
+              Submissions.documentID(userID, problemID),
+              stored -> this.submissionChanges(stored, userID, problemID, date, score, code));
+
+      if (win) {
+        this.leaderboard.update(data);
       }
 
       // returns success and displays the data inputted to make sure
       responseMap.put("response_type", "success");
       responseMap.put("updated data", data);
+      responseMap.put("submission", submission);
     } catch (IllegalArgumentException | ExecutionException | InterruptedException e) {
       // returns failure if something went wrong
       responseMap.put("response_type", "failure");
@@ -138,24 +99,76 @@ public class UserUpdateHist implements Route {
   }
 
   /**
-   * Helper function to reduce clutter when checking scores. Scores are in string format as a
-   * fraction (like 4/5), and this converts to decimal so it can be easily compared.
+   * Computes what a submission changes in a user document: one more win if it won and the win was
+   * not counted already.
    *
-   * @param score
-   * @return
+   * @param user the user document, null if the user does not exist
+   * @param winKey problem and date of the submission, identifying the win
+   * @return the fields to change
    */
-  private double fracToDouble(String score) {
-    double scoreDouble;
-    try {
-      if (score.contains("/")) {
-        String[] fractionParts = score.split("/");
-        scoreDouble = Double.parseDouble(fractionParts[0]) / Double.parseDouble(fractionParts[1]);
-      } else {
-        scoreDouble = Double.parseDouble(score);
+  private Map<String, Object> winChanges(Map<String, Object> user, boolean win, String winKey) {
+    if (user == null) {
+      throw new IllegalArgumentException(
+          "User document not found. Check spelling or if the user exists");
+    }
+    Map<String, Object> changes = new HashMap<>();
+    if (!win || !user.containsKey("wins")) {
+      return changes;
+    }
+    List<Object> counted = new ArrayList<>();
+    if (user.get(COUNTED_WINS) instanceof List<?> stored) {
+      counted.addAll(stored);
+    }
+    if (counted.contains(winKey)) {
+      // a retry of a win that was already counted
+      return changes;
+    }
+    Object wins = user.get("wins");
+    if (wins instanceof Number) {
+      changes.put("wins", new Increment(1));
+    } else {
+      // stored as text, so it is rewritten as a number instead of incremented
+      try {
+        changes.put("wins", (long) Double.parseDouble(wins.toString()) + 1);
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException(
+            "Value of wins in user " + user.get("userID") + " not a number");
+      }
+    }
+    counted.add(winKey);
+    changes.put(
+        COUNTED_WINS,
+        new ArrayList<>(
+            counted.subList(Math.max(0, counted.size() - MAX_COUNTED_WINS), counted.size())));
+    return changes;
+  }
+
+  /**
+   * Computes the submission document to store: the new submission if there is none yet for the
+   * problem or the new score is at least as good, otherwise nothing.
+   *
+   * @param stored the stored submission, null if there is none
+   * @return the fields to change, or null to keep the stored submission
+   */
+  private Map<String, Object> submissionChanges(
+      Map<String, Object> stored,
+      String userID,
+      String problemID,
+      String date,
+      String score,
+      String code) {
+    if (stored != null) {
+      // problem already has a submission, must check if we need to update
+      if (!stored.containsKey("score")) {
+        throw new IllegalArgumentException(
+            "for some reason problem map does not contain field score. Uh oh");
+      }
+      double oldScore = Submissions.scoreValue(stored.get("score").toString());
+      if (Submissions.scoreValue(score) < oldScore) {
+        // new score not as good as old score, only need to update win
+        return null;
       }
-    } catch (NumberFormatException e) {
-      throw new IllegalArgumentException("Invalid score format: " + score);
     }
-    return scoreDouble;
+    return Submissions.submission(userID, problemID, score, code, date);
   }
 }
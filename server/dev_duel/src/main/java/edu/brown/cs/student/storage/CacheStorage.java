@@ -2,12 +2,22 @@ package edu.brown.cs.student.storage;
 
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 // do we need this?
 public class CacheStorage<V> {
   private final Cache<String, V> cache;
+  // set only for read-through caches
+  private final LoadingCache<String, V> loadingCache;
 
   /**
    * CacheStorage is wrapper class around Google's Guava cache api. This cache cache provides
@@ -19,17 +29,97 @@ public class CacheStorage<V> {
         CacheBuilder.newBuilder()
             .maximumSize(maxSize)
             .expireAfterAccess(evictAfterGetMin, TimeUnit.MINUTES)
+            .recordStats()
             .build();
+    this.loadingCache = null;
+  }
+
+  /**
+   * Creates a cache whose items also expire a fixed time after being written, however often they
+   * are read. Use this for items that may go stale.
+   *
+   * @param maxSize maximum number of items
+   * @param evictAfterGetMin minutes after the last access an item is evicted
+   * @param evictAfterPutMin minutes after being written an item is evicted
+   */
+  public CacheStorage(int maxSize, int evictAfterGetMin, int evictAfterPutMin) {
+    this.cache =
+        CacheBuilder.newBuilder()
+            .maximumSize(maxSize)
+            .expireAfterAccess(evictAfterGetMin, TimeUnit.MINUTES)
+            .expireAfterWrite(evictAfterPutMin, TimeUnit.MINUTES)
+            .recordStats()
+            .build();
+    this.loadingCache = null;
+  }
+
+  /**
+   * Creates a read-through cache: a get for a missing key loads the item with the loader instead of
+   * returning null. Items older than refreshAfterPutMin are reloaded in the background on their
+   * next read, while the old value keeps being served until the reload finishes.
+   *
+   * @param maxSize maximum number of items
+   * @param evictAfterGetMin minutes after the last access an item is evicted
+   * @param refreshAfterPutMin minutes after being written an item is reloaded on read
+   * @param loader loads the item of a key, returning null if there is none
+   * @param refreshExecutor executor background reloads run on
+   */
+  public CacheStorage(
+      int maxSize,
+      int evictAfterGetMin,
+      int refreshAfterPutMin,
+      Function<String, V> loader,
+      Executor refreshExecutor) {
+    this.loadingCache =
+        CacheBuilder.newBuilder()
+            .maximumSize(maxSize)
+            .expireAfterAccess(evictAfterGetMin, TimeUnit.MINUTES)
+            .refreshAfterWrite(refreshAfterPutMin, TimeUnit.MINUTES)
+            .recordStats()
+            .build(CacheLoader.asyncReloading(CacheLoader.from(loader::apply), refreshExecutor));
+    this.cache = this.loadingCache;
   }
 
   /**
    * Wrapper around guava cache's getIfPresent
    *
    * @param key key of item to retrieve
-   * @return item associated with key or null if no item found.
+   * @return item associated with key or null if no item found. Read-through caches load missing
+   *     items first and only return null if the loader has none or fails.
    */
   public V get(String key) {
-    return this.cache.getIfPresent(key);
+    if (this.loadingCache == null) {
+      return this.cache.getIfPresent(key);
+    }
+    try {
+      return this.loadingCache.get(key);
+    } catch (ExecutionException
+        | UncheckedExecutionException
+        | CacheLoader.InvalidCacheLoadException e) {
+      // InvalidCacheLoadException means the loader returned null, i.e. no such item
+      System.out.println("__CACHE_LOAD_ERR__: " + key + " " + e.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * Gets several items at once. Read-through caches load every missing item first.
+   *
+   * @param keys keys of the items to retrieve
+   * @return map from key to item, without the keys that have no item
+   */
+  public Map<String, V> getAll(Iterable<String> keys) {
+    if (this.loadingCache == null) {
+      return this.cache.getAllPresent(keys);
+    }
+    Map<String, V> items = new HashMap<>();
+    for (String key : keys) {
+      V item = this.get(key);
+      if (item != null) {
+        items.put(key, item);
+      }
+    }
+    return items;
   }
 
   /**
@@ -48,4 +138,21 @@ public class CacheStorage<V> {
   public Map<String, V> asMap() {
     return this.cache.asMap();
   }
+
+  /**
+   * @return hit, miss and load statistics of the cache since it was created
+   */
+  public Map<String, Object> stats() {
+    CacheStats stats = this.cache.stats();
+    Map<String, Object> statsMap = new HashMap<>();
+    statsMap.put("size", this.cache.size());
+    statsMap.put("hits", stats.hitCount());
+    statsMap.put("misses", stats.missCount());
+    statsMap.put("hitRate", stats.hitRate());
+    statsMap.put("loads", stats.loadCount());
+    statsMap.put("loadFailures", stats.loadExceptionCount());
+    statsMap.put("averageLoadMillis", stats.averageLoadPenalty() / 1_000_000.0);
+    statsMap.put("evictions", stats.evictionCount());
+    return statsMap;
+  }
 }
@@ -0,0 +1,127 @@
+package edu.brown.cs.student.storage;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/** Helpers for documents held in memory as nested maps. */
+final class DocumentMaps {
+  private DocumentMaps() {}
+
+  /**
+   * Merges source into target like a firestore merge: nested maps such as players are merged, an
+   * {@link Increment} adds to the number already there, and any other field is replaced. Maps taken
+   * from source are copied, so source can be changed later.
+   *
+   * @param target document to change
+   * @param source fields to merge into it
+   */
+  @SuppressWarnings("unchecked")
+  static void merge(Map<String, Object> target, Map<String, Object> source) {
+    for (Map.Entry<String, Object> entry : source.entrySet()) {
+      Object value = entry.getValue();
+      Object current = target.get(entry.getKey());
+      if (value instanceof Map && current instanceof Map) {
+        merge((Map<String, Object>) current, (Map<String, Object>) value);
+      } else if (value instanceof Increment increment) {
+        target.put(entry.getKey(), add(current, increment));
+      } else {
+        target.put(
+            entry.getKey(), value instanceof Map ? deepCopy((Map<String, Object>) value) : value);
+      }
+    }
+  }
+
+  /**
+   * Applies an increment to the current value, which may itself be a waiting increment. Like a
+   * firestore increment, a decimal stays a decimal and an integer stays an integer.
+   */
+  private static Object add(Object current, Increment increment) {
+    if (current instanceof Increment previous) {
+      return new Increment(previous.amount() + increment.amount());
+    }
+    if (current instanceof Double || current instanceof Float) {
+      return ((Number) current).doubleValue() + increment.amount();
+    }
+    if (current instanceof Number number) {
+      return number.longValue() + increment.amount();
+    }
+    return increment.amount();
+  }
+
+  /**
+   * Keeps only some fields of a document, like a firestore field mask. A field may be a dotted path
+   * such as "players.user_2", which keeps only that entry of the nested map.
+   *
+   * @param document document to project
+   * @param fields fields to keep
+   * @return a new map with only those fields; fields the document lacks are left out
+   */
+  @SuppressWarnings("unchecked")
+  static Map<String, Object> project(Map<String, Object> document, Set<String> fields) {
+    Map<String, Object> projected = new HashMap<>();
+    for (String field : fields) {
+      String[] path = field.split("\\.");
+      Object value = document;
+      for (String segment : path) {
+        value = value instanceof Map ? ((Map<String, Object>) value).get(segment) : null;
+      }
+      if (value == null) {
+        continue;
+      }
+      // rebuild the nested maps down to the selected value
+      Map<String, Object> target = projected;
+      for (int i = 0; i < path.length - 1; i++) {
+        target = (Map<String, Object>) target.computeIfAbsent(path[i], segment -> new HashMap<>());
+      }
+      target.put(path[path.length - 1], value);
+    }
+    return projected;
+  }
+
+  /**
+   * @param map document to copy
+   * @return a copy sharing no nested map with the original
+   */
+  @SuppressWarnings("unchecked")
+  static Map<String, Object> deepCopy(Map<String, Object> map) {
+    Map<String, Object> copy = new HashMap<>();
+    for (Map.Entry<String, Object> entry : map.entrySet()) {
+      Object value = entry.getValue();
+      copy.put(
+          entry.getKey(), value instanceof Map ? deepCopy((Map<String, Object>) value) : value);
+    }
+    return copy;
+  }
+
+  /**
+   * Orders field values like firestore does: booleans, then numbers by value whatever their type,
+   * then strings, then anything else by its text.
+   *
+   * @return a negative number, zero or a positive number as a is less than, equal to or greater
+   *     than b
+   */
+  static int compareValues(Object a, Object b) {
+    int byType = Integer.compare(typeOrder(a), typeOrder(b));
+    if (byType != 0) {
+      return byType;
+    }
+    if (a instanceof Boolean x && b instanceof Boolean y) {
+      return x.compareTo(y);
+    }
+    if (a instanceof Number x && b instanceof Number y) {
+      return Double.compare(x.doubleValue(), y.doubleValue());
+    }
+    return String.valueOf(a).compareTo(String.valueOf(b));
+  }
+
+  private static int typeOrder(Object value) {
+    if (value instanceof Boolean) {
+      return 0;
+    }
+    if (value instanceof Number) {
+      return 1;
+    }
+    return value instanceof String ? 2 : 3;
+  }
+}
@@ -0,0 +1,12 @@
+package edu.brown.cs.student.storage;
+
+import java.util.Map;
+
+/**
+ * One merge into a document, as done by {@link IStorage#updateDocument}.
+ *
+ * @param collectionID collection of the document
+ * @param docID ID of the document
+ * @param data fields to merge into the document
+ */
+public record DocumentUpdate(String collectionID, String docID, Map<String, Object> data) {}
@@ -5,12 +5,16 @@ import com.google.auth.oauth2.GoogleCredentials;
 import com.google.cloud.firestore.AggregateQuerySnapshot;
 import com.google.cloud.firestore.DocumentReference;
 import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.FieldMask;
+import com.google.cloud.firestore.FieldPath;
+import com.google.cloud.firestore.FieldValue;
 import com.google.cloud.firestore.Firestore;
 import com.google.cloud.firestore.Query;
 import com.google.cloud.firestore.Query.Direction;
 import com.google.cloud.firestore.QueryDocumentSnapshot;
 import com.google.cloud.firestore.QuerySnapshot;
 import com.google.cloud.firestore.SetOptions;
+import com.google.cloud.firestore.WriteBatch;
 import com.google.cloud.firestore.WriteResult;
 import com.google.firebase.FirebaseApp;
 import com.google.firebase.FirebaseOptions;
@@ -19,17 +23,23 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
-import java.util.stream.IntStream;
+import java.util.function.Function;
 
 /** Utility Class for interacting with Firebase Firestore */
 public class FirestoreUtil implements IStorage {
 
+  // firestore rejects batches of more than 500 writes
+  private static final int MAX_BATCH_WRITES = 500;
+
   private Firestore db;
   private final String firebaseConfigPath = "src/main/resources/firebase_config.json";
+  // problems are read from memory; loaded on first use or by startRefreshing
+  private final ProblemCatalog problemCatalog = new ProblemCatalog(() -> getCollection("Problems"));
 
   public FirestoreUtil() throws IOException {
     try {
@@ -80,6 +90,74 @@ public class FirestoreUtil implements IStorage {
     docRef.set(data, SetOptions.merge());
   }
 
+  // every update is a merge like updateDocument, but they are committed together as batches
+  @Override
+  public void updateDocuments(List<DocumentUpdate> updates)
+      throws ExecutionException, InterruptedException {
+    for (int start = 0; start < updates.size(); start += MAX_BATCH_WRITES) {
+      WriteBatch batch = this.db.batch();
+      for (DocumentUpdate update :
+          updates.subList(start, Math.min(start + MAX_BATCH_WRITES, updates.size()))) {
+        batch.set(
+            this.db.collection(update.collectionID()).document(update.docID()),
+            update.data(),
+            SetOptions.merge());
+      }
+      batch.commit().get();
+    }
+  }
+
+  // runs as a firestore transaction, which retries changes if the document changed meanwhile
+  @Override
+  public Map<String, Object> transact(
+      String collectionID, String docID, Function<Map<String, Object>, Map<String, Object>> changes)
+      throws ExecutionException, InterruptedException {
+    if (collectionID == null || docID == null || changes == null) {
+      throw new IllegalArgumentException(
+          "transact: collectionID, docID, or changes cannot be null");
+    }
+    DocumentReference docRef = this.db.collection(collectionID).document(docID);
+    ApiFuture<Map<String, Object>> future =
+        this.db.runTransaction(
+            transaction -> {
+              Map<String, Object> current = transaction.get(docRef).get().getData();
+              Map<String, Object> changed = changes.apply(current);
+              if (changed == null || changed.isEmpty()) {
+                return current;
+              }
+              transaction.set(docRef, toFirestoreValues(changed), SetOptions.merge());
+              Map<String, Object> updated =
+                  current == null ? new HashMap<>() : DocumentMaps.deepCopy(current);
+              DocumentMaps.merge(updated, changed);
+              return updated;
+            });
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      // errors thrown by changes, e.g. a missing document, reach the caller unwrapped
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      throw e;
+    }
+  }
+
+  /** Replaces each {@link Increment} with a firestore increment, so only that field is written. */
+  @SuppressWarnings("unchecked")
+  private static Map<String, Object> toFirestoreValues(Map<String, Object> changes) {
+    Map<String, Object> values = new HashMap<>();
+    for (Map.Entry<String, Object> entry : changes.entrySet()) {
+      Object value = entry.getValue();
+      if (value instanceof Increment increment) {
+        value = FieldValue.increment(increment.amount());
+      } else if (value instanceof Map) {
+        value = toFirestoreValues((Map<String, Object>) value);
+      }
+      values.put(entry.getKey(), value);
+    }
+    return values;
+  }
+
   @Override
   public Map<String, Object> getDocument(String collection_id, String doc_id)
       throws InterruptedException, ExecutionException {
@@ -96,6 +174,22 @@ public class FirestoreUtil implements IStorage {
     return null;
   }
 
+  // the field mask makes firestore send only the selected fields
+  @Override
+  public Map<String, Object> getDocument(String collection_id, String doc_id, Set<String> fields)
+      throws InterruptedException, ExecutionException {
+    if (fields == null) {
+      return this.getDocument(collection_id, doc_id);
+    }
+    DocumentReference docRef = this.db.collection(collection_id).document(doc_id);
+    DocumentSnapshot document = docRef.get(FieldMask.of(fields.toArray(new String[0]))).get();
+    if (document.exists()) {
+      return document.getData();
+    }
+    System.out.println("No such document: " + doc_id + " in collection " + collection_id);
+    return null;
+  }
+
   @Override
   public void deleteDocument(String collectionID, String docID)
       throws InterruptedException, ExecutionException {
@@ -128,6 +222,68 @@ public class FirestoreUtil implements IStorage {
     return collection; // note this could return null I think
   }
 
+  // select makes firestore send only the selected fields of each document
+  @Override
+  public List<Map<String, Object>> getCollection(String collectionID, Set<String> fields)
+      throws ExecutionException, InterruptedException {
+    if (fields == null) {
+      return this.getCollection(collectionID);
+    }
+    if (collectionID == null) {
+      throw new IllegalArgumentException("getCollection: collectionId cannot be null");
+    }
+    Query query = this.db.collection(collectionID).select(fields.toArray(new String[0]));
+    List<Map<String, Object>> collection = new ArrayList<>();
+    for (QueryDocumentSnapshot document : query.get().get().getDocuments()) {
+      collection.add(document.getData());
+    }
+    return collection;
+  }
+
+  // the cursor holds the last document ID, so startAfter skips straight past the previous pages
+  @Override
+  public Page getCollectionPage(String collectionID, Set<String> fields, int limit, String cursor)
+      throws ExecutionException, InterruptedException {
+    if (collectionID == null) {
+      throw new IllegalArgumentException("getCollectionPage: collectionID cannot be null");
+    }
+    Query query = this.db.collection(collectionID).orderBy(FieldPath.documentId());
+    if (fields != null) {
+      query = query.select(fields.toArray(new String[0]));
+    }
+    if (cursor != null) {
+      query = query.startAfter(Page.decodeCursor(cursor));
+    }
+    return this.readPage(query, limit);
+  }
+
+  /** Reads one extra document, which only tells whether there is a next page. */
+  private Page readPage(Query query, int limit) throws ExecutionException, InterruptedException {
+    List<Map<String, Object>> documents = new ArrayList<>();
+    List<String> ids = new ArrayList<>();
+    for (QueryDocumentSnapshot document : query.limit(limit + 1).get().get().getDocuments()) {
+      documents.add(document.getData());
+      ids.add(document.getId());
+    }
+    return Page.of(documents, ids, limit);
+  }
+
+  // like getCollectionPage, the cursor skips past the previous pages instead of reading them
+  @Override
+  public Page getDocumentsWhere(
+      String collectionID, String field, Object value, int limit, String cursor)
+      throws ExecutionException, InterruptedException {
+    if (collectionID == null || field == null) {
+      throw new IllegalArgumentException("getDocumentsWhere: collectionID or field cannot be null");
+    }
+    Query query =
+        this.db.collection(collectionID).whereEqualTo(field, value).orderBy(FieldPath.documentId());
+    if (cursor != null) {
+      query = query.startAfter(Page.decodeCursor(cursor));
+    }
+    return this.readPage(query, limit);
+  }
+
   @Override
   public long getDocumentCount(String collectionID)
       throws InterruptedException, ExecutionException {
@@ -138,43 +294,30 @@ public class FirestoreUtil implements IStorage {
     return snapshot.getCount();
   }
 
+  /**
+   * @return the in-memory catalog the problem lookups are answered from
+   */
+  public ProblemCatalog getProblemCatalog() {
+    return this.problemCatalog;
+  }
+
   @Override
   public List<Map<String, Object>> getProblems(String difficulty, int number)
       throws InterruptedException, ExecutionException, IOException {
-
-    // Reference to the collection and create a query
-    Query query = db.collection("Problems").whereEqualTo("difficulty", difficulty);
-    // Execute the query
-    ApiFuture<QuerySnapshot> querySnapshot = query.get();
-    // Get the query results
-    List<QueryDocumentSnapshot> documents = querySnapshot.get().getDocuments();
-
-    List<Map<String, Object>> selectedProblems = new ArrayList<>();
-    // get the size of the document
-    int docSize = documents.size();
-    // if no question of this difficulty found at all,
-    if (docSize == 0) {
-      return new ArrayList<>();
-    }
-    // return all that we have if not enough questions of this difficulty level.
-    number = docSize < number ? docSize : number;
-
-    IntStream randomInts = new Random().ints(number, 0, docSize);
-    for (int num : randomInts.toArray()) {
-      // get document and convert it to string and then deserialize it
-      Map<String, Object> doc = documents.get(num).getData();
-      selectedProblems.add(doc);
-    }
-    return selectedProblems;
+    // distinct random problems from the in-memory catalog, no remote reads
+    return this.problemCatalog.getProblems(difficulty, number);
   }
 
   @Override
   public Map<String, Object> getProblem(String problemID)
       throws InterruptedException, ExecutionException, IOException {
-    Query query = db.collection("Problems").whereEqualTo("problemID", problemID);
-    ApiFuture<QuerySnapshot> querySnapshot = query.get();
-    List<QueryDocumentSnapshot> documents = querySnapshot.get().getDocuments();
-    return documents.get(0).getData();
+    return this.problemCatalog.getProblem(problemID);
+  }
+
+  @Override
+  public Map<String, Object> getProblemByName(String name)
+      throws InterruptedException, ExecutionException, IOException {
+    return this.problemCatalog.getProblemByName(name);
   }
 
   @Override
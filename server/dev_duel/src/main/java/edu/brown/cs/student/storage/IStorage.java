@@ -1,9 +1,12 @@
 package edu.brown.cs.student.storage;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
 
 /** This interface declare storage operations */
 public interface IStorage {
@@ -30,6 +33,36 @@ public interface IStorage {
   void updateDocument(String collection_id, String doc_id, Map<String, Object> data)
       throws IllegalArgumentException;
 
+  /**
+   * Applies several updates like {@link #updateDocument}, in as few writes as the storage allows
+   *
+   * @param updates the updates to apply, in order
+   * @throws ExecutionException if the updates could not be written
+   */
+  default void updateDocuments(List<DocumentUpdate> updates)
+      throws ExecutionException, InterruptedException {
+    for (DocumentUpdate update : updates) {
+      this.updateDocument(update.collectionID(), update.docID(), update.data());
+    }
+  }
+
+  /**
+   * Reads a document, computes changes from it and merges them in, as one atomic step: no other
+   * change to the document can happen in between. Only the returned fields are written; nested maps
+   * are merged and {@link Increment} values add to the stored number.
+   *
+   * @param collectionID collection ID
+   * @param docID document ID
+   * @param changes given the current document (null if there is none), returns the fields to
+   *     change, or null to change nothing. It may run more than once, so it must not have side
+   *     effects
+   * @return the document after the change
+   * @throws IllegalArgumentException if changes throws it
+   */
+  Map<String, Object> transact(
+      String collectionID, String docID, Function<Map<String, Object>, Map<String, Object>> changes)
+      throws ExecutionException, InterruptedException;
+
   /**
    * Gets a collection
    *
@@ -41,6 +74,53 @@ public interface IStorage {
   List<Map<String, Object>> getCollection(String collection_id)
       throws InterruptedException, ExecutionException;
 
+  /**
+   * Gets a collection, with only some fields of each document
+   *
+   * @param collection_id collection id
+   * @param fields fields to return, dotted for nested fields; null for all of them
+   * @return the collection as a list of Maps
+   */
+  default List<Map<String, Object>> getCollection(String collection_id, Set<String> fields)
+      throws InterruptedException, ExecutionException {
+    List<Map<String, Object>> collection = this.getCollection(collection_id);
+    if (fields == null) {
+      return collection;
+    }
+    List<Map<String, Object>> projected = new ArrayList<>(collection.size());
+    for (Map<String, Object> document : collection) {
+      projected.add(DocumentMaps.project(document, fields));
+    }
+    return projected;
+  }
+
+  /**
+   * Gets one page of a collection, ordered by document ID
+   *
+   * @param collectionID collection ID
+   * @param fields fields to return, dotted for nested fields; null for all of them
+   * @param limit maximum number of documents in the page
+   * @param cursor nextCursor of the previous page, or null for the first page
+   * @return the page
+   * @throws IllegalArgumentException if the cursor is invalid
+   */
+  Page getCollectionPage(String collectionID, Set<String> fields, int limit, String cursor)
+      throws InterruptedException, ExecutionException;
+
+  /**
+   * Retrieves one page of the documents whose field equals a value, ordered by document ID
+   *
+   * @param collectionID collection ID
+   * @param field field to filter on
+   * @param value value the field must equal
+   * @param limit maximum number of documents in the page
+   * @param cursor nextCursor of the previous page, or null for the first page
+   * @return the page of matching documents
+   * @throws IllegalArgumentException if the cursor is invalid
+   */
+  Page getDocumentsWhere(String collectionID, String field, Object value, int limit, String cursor)
+      throws InterruptedException, ExecutionException;
+
   /**
    * Retrieves a documents from a specific collection.
    *
@@ -53,6 +133,20 @@ public interface IStorage {
   Map<String, Object> getDocument(String collection_id, String doc_id)
       throws InterruptedException, ExecutionException;
 
+  /**
+   * Retrieves a document, with only some of its fields
+   *
+   * @param collection_id Collection ID.
+   * @param doc_id the doc ID
+   * @param fields fields to return, dotted for nested fields; null for all of them
+   * @return the document, or null if it does not exist
+   */
+  default Map<String, Object> getDocument(String collection_id, String doc_id, Set<String> fields)
+      throws InterruptedException, ExecutionException {
+    Map<String, Object> document = this.getDocument(collection_id, doc_id);
+    return document == null || fields == null ? document : DocumentMaps.project(document, fields);
+  }
+
   /**
    * Deletes a specific room
    *
@@ -77,6 +171,15 @@ public interface IStorage {
   public Map<String, Object> getProblem(String problemID)
       throws InterruptedException, ExecutionException, IOException;
 
+  /**
+   * Retrieves a problem by its name, which is how the problem cache keys problems
+   *
+   * @param name name of the problem
+   * @return the problem document, or null if there is no problem with this name
+   */
+  public Map<String, Object> getProblemByName(String name)
+      throws InterruptedException, ExecutionException, IOException;
+
   public List<Map<String, Object>> sortCollection(String collectionID, String field)
       throws InterruptedException, ExecutionException, IOException;
 }
@@ -0,0 +1,462 @@
+package edu.brown.cs.student.storage;
+
+import com.google.common.util.concurrent.Striped;
+import com.squareup.moshi.Types;
+import edu.brown.cs.student.util.JsonUtil;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Function;
+
+/**
+ * InMemoryStorage keeps every collection in memory, so the server runs, and can be load tested,
+ * without firestore. It is safe to use from Spark's request threads: documents are kept sorted by
+ * ID in concurrent maps, writes to one document run one at a time, and readers never lock.
+ *
+ * <p>Stored documents are never changed in place. Every write stores a new copy with the next
+ * version number of the document, and reads return copies, so callers cannot change what is stored.
+ * {@link #transact} relies on the versions: it applies its changes outside the lock and only
+ * commits if the document is still at the version it read, retrying otherwise.
+ *
+ * <p>Declared fields are indexed in every collection, so sorting and filtering by them, and paging
+ * through the results, take O(log n) plus the size of the page instead of a scan and a sort.
+ * Queries on other fields still work, with a scan.
+ */
+public class InMemoryStorage implements IStorage {
+  /** The fields the endpoints sort and filter by. */
+  public static final Set<String> DEFAULT_INDEXED_FIELDS =
+      Set.of("difficulty", "wins", "problemID", "userID", "name");
+
+  /** Collection holding the problems, keyed by problemID. */
+  public static final String PROBLEMS = "Problems";
+
+  private static final Type PROBLEM_LIST =
+      Types.newParameterizedType(
+          List.class, Types.newParameterizedType(Map.class, String.class, Object.class));
+
+  // ascending by value, then by document ID; a null ID sorts first, to start a range at a value
+  private static final Comparator<IndexKey> INDEX_ORDER =
+      Comparator.<IndexKey, Object>comparing(IndexKey::value, DocumentMaps::compareValues)
+          .thenComparing(IndexKey::docID, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+  private final Set<String> indexedFields;
+  private final ConcurrentMap<String, Collection> collections = new ConcurrentHashMap<>();
+  // writes to one document run one at a time
+  private final Striped<Lock> documentLocks = Striped.lock(64);
+
+  public InMemoryStorage() {
+    this(DEFAULT_INDEXED_FIELDS);
+  }
+
+  /**
+   * @param indexedFields fields to index in every collection
+   */
+  public InMemoryStorage(Set<String> indexedFields) {
+    this.indexedFields = Set.copyOf(indexedFields);
+  }
+
+  /**
+   * Adds the problems of a json file, a list of problem documents, to the Problems collection.
+   *
+   * @param path path of the file, e.g. data/problems.json
+   * @return number of problems loaded
+   * @throws IOException if the file cannot be read or is not a list of problems
+   */
+  public int loadProblems(String path) throws IOException {
+    List<Map<String, Object>> problems =
+        JsonUtil.toObject(Files.readString(Path.of(path)), PROBLEM_LIST);
+    if (problems == null) {
+      throw new IOException("No problems in " + path);
+    }
+    for (Map<String, Object> problem : problems) {
+      if (problem.get("problemID") == null) {
+        throw new IOException(
+            "Problem without a problemID in " + path + ": " + problem.get("name"));
+      }
+      this.addDocument(PROBLEMS, problem.get("problemID").toString(), problem);
+    }
+    return problems.size();
+  }
+
+  /**
+   * @param collectionID collection ID
+   * @param docID document ID
+   * @return number of times the document was written since it was created, or 0 if it does not
+   *     exist
+   */
+  public long getVersion(String collectionID, String docID) {
+    Versioned current = this.collection(collectionID).documents.get(docID);
+    return current == null ? 0 : current.version();
+  }
+
+  @Override
+  public void addDocument(String collection_id, String doc_id, Map<String, Object> data)
+      throws IllegalArgumentException {
+    if (collection_id == null || doc_id == null || data == null) {
+      throw new IllegalArgumentException("Collection ID, document ID, and data cannot be null.");
+    }
+    this.write(collection_id, doc_id, false, null, current -> DocumentMaps.deepCopy(data));
+  }
+
+  @Override
+  public void updateDocument(String collection_id, String doc_id, Map<String, Object> data)
+      throws IllegalArgumentException {
+    if (collection_id == null || doc_id == null || data == null) {
+      throw new IllegalArgumentException(
+          "updateDocument: collection_id, doc_id, or data cannot be null");
+    }
+    this.write(collection_id, doc_id, false, null, current -> merged(current, data));
+  }
+
+  @Override
+  public Map<String, Object> transact(
+      String collectionID, String docID, Function<Map<String, Object>, Map<String, Object>> changes)
+      throws ExecutionException, InterruptedException {
+    if (collectionID == null || docID == null || changes == null) {
+      throw new IllegalArgumentException(
+          "transact: collectionID, docID, or changes cannot be null");
+    }
+    Collection collection = this.collection(collectionID);
+    while (true) {
+      Versioned read = collection.documents.get(docID);
+      Map<String, Object> current = read == null ? null : read.data();
+      Map<String, Object> changed =
+          changes.apply(current == null ? null : DocumentMaps.deepCopy(current));
+      if (changed == null || changed.isEmpty()) {
+        return current == null ? null : DocumentMaps.deepCopy(current);
+      }
+      Map<String, Object> updated = merged(current, changed);
+      // fails if another write got in since the read, so the changes are made again on its result
+      if (this.write(collectionID, docID, true, read, unchanged -> updated)) {
+        return DocumentMaps.deepCopy(updated);
+      }
+    }
+  }
+
+  @Override
+  public List<Map<String, Object>> getCollection(String collection_id)
+      throws InterruptedException, ExecutionException {
+    return this.getCollection(collection_id, null);
+  }
+
+  @Override
+  public List<Map<String, Object>> getCollection(String collection_id, Set<String> fields)
+      throws InterruptedException, ExecutionException {
+    if (collection_id == null) {
+      throw new IllegalArgumentException("Collection ID cannot be null.");
+    }
+    List<Map<String, Object>> documents = new ArrayList<>();
+    for (Versioned document : this.collection(collection_id).documents.values()) {
+      documents.add(copy(document.data(), fields));
+    }
+    return documents;
+  }
+
+  @Override
+  public Map<String, Object> getDocument(String collection_id, String doc_id)
+      throws InterruptedException, ExecutionException {
+    return this.getDocument(collection_id, doc_id, null);
+  }
+
+  @Override
+  public Map<String, Object> getDocument(String collection_id, String doc_id, Set<String> fields)
+      throws InterruptedException, ExecutionException {
+    if (collection_id == null || doc_id == null) {
+      throw new IllegalArgumentException("Collection ID and document ID cannot be null.");
+    }
+    Versioned document = this.collection(collection_id).documents.get(doc_id);
+    return document == null ? null : copy(document.data(), fields);
+  }
+
+  @Override
+  public void deleteDocument(String collectionID, String docID)
+      throws InterruptedException, ExecutionException {
+    if (collectionID == null || docID == null) {
+      throw new IllegalArgumentException("deleteDocument: collectionID and docID cannot be null");
+    }
+    // deleting a missing document does nothing, like in firestore
+    this.write(collectionID, docID, false, null, current -> null);
+  }
+
+  @Override
+  public Page getCollectionPage(String collectionID, Set<String> fields, int limit, String cursor)
+      throws InterruptedException, ExecutionException {
+    if (collectionID == null) {
+      throw new IllegalArgumentException("getCollectionPage: collectionID cannot be null");
+    }
+    ConcurrentSkipListMap<String, Versioned> documents = this.collection(collectionID).documents;
+    Map<String, Versioned> after =
+        cursor == null ? documents : documents.tailMap(Page.decodeCursor(cursor), false);
+    List<Map<String, Object>> read = new ArrayList<>();
+    List<String> ids = new ArrayList<>();
+    for (Map.Entry<String, Versioned> entry : after.entrySet()) {
+      if (read.size() > limit) {
+        break;
+      }
+      read.add(copy(entry.getValue().data(), fields));
+      ids.add(entry.getKey());
+    }
+    return Page.of(read, ids, limit);
+  }
+
+  @Override
+  public Page getDocumentsWhere(
+      String collectionID, String field, Object value, int limit, String cursor)
+      throws InterruptedException, ExecutionException {
+    if (collectionID == null || field == null) {
+      throw new IllegalArgumentException("getDocumentsWhere: collectionID or field cannot be null");
+    }
+    String after = cursor == null ? null : Page.decodeCursor(cursor);
+    List<Map<String, Object>> read = new ArrayList<>();
+    List<String> ids = new ArrayList<>();
+    // ordered by document ID, like the firestore query
+    for (Map.Entry<String, Map<String, Object>> match :
+        this.whereEqual(collectionID, field, value, after, limit + 1)) {
+      read.add(DocumentMaps.deepCopy(match.getValue()));
+      ids.add(match.getKey());
+    }
+    return Page.of(read, ids, limit);
+  }
+
+  @Override
+  public long getDocumentCount(String collectionID)
+      throws InterruptedException, ExecutionException {
+    if (collectionID == null) {
+      throw new IllegalArgumentException("getDocumentCount: collectionID cannot be null");
+    }
+    return this.collection(collectionID).count.get();
+  }
+
+  @Override
+  public List<Map<String, Object>> sortCollection(String collectionID, String field)
+      throws InterruptedException, ExecutionException, IOException {
+    if (collectionID == null || field == null) {
+      throw new IllegalArgumentException("sortCollection: collectionID or field cannot be null");
+    }
+    Collection collection = this.collection(collectionID);
+    List<Map<String, Object>> sorted = new ArrayList<>();
+    for (IndexKey key : this.index(collection, field).descendingSet()) {
+      Map<String, Object> document = current(collection, field, key);
+      if (document != null) {
+        sorted.add(DocumentMaps.deepCopy(document));
+      }
+    }
+    return sorted;
+  }
+
+  @Override
+  public List<Map<String, Object>> getProblems(String difficulty, int number)
+      throws InterruptedException, ExecutionException, IOException {
+    List<Map<String, Object>> ofDifficulty = this.whereEqual(PROBLEMS, "difficulty", difficulty);
+    List<Map<String, Object>> problems = new ArrayList<>();
+    for (int index :
+        ProblemCatalog.sampleIndices(
+            ofDifficulty.size(), Math.max(0, Math.min(number, ofDifficulty.size())))) {
+      problems.add(DocumentMaps.deepCopy(ofDifficulty.get(index)));
+    }
+    return problems;
+  }
+
+  @Override
+  public Map<String, Object> getProblem(String problemID)
+      throws InterruptedException, ExecutionException, IOException {
+    List<Map<String, Object>> problems = this.whereEqual(PROBLEMS, "problemID", problemID);
+    return problems.isEmpty() ? null : DocumentMaps.deepCopy(problems.get(0));
+  }
+
+  @Override
+  public Map<String, Object> getProblemByName(String name)
+      throws InterruptedException, ExecutionException, IOException {
+    List<Map<String, Object>> problems = this.whereEqual(PROBLEMS, "name", name);
+    return problems.isEmpty() ? null : DocumentMaps.deepCopy(problems.get(0));
+  }
+
+  /**
+   * Writes one document and its index entries while holding the document's lock.
+   *
+   * @param conditional whether to write only if the stored document is still expected
+   * @param expected the stored document the write is based on, null if there was none
+   * @param next the new data from the stored data (null if there is none), or null to delete
+   * @return false if the write was conditional and the document has changed since
+   */
+  private boolean write(
+      String collectionID,
+      String docID,
+      boolean conditional,
+      Versioned expected,
+      Function<Map<String, Object>, Map<String, Object>> next) {
+    Collection collection = this.collection(collectionID);
+    Lock lock = this.documentLocks.get(collectionID + "/" + docID);
+    lock.lock();
+    try {
+      Versioned current = collection.documents.get(docID);
+      if (conditional && current != expected) {
+        return false;
+      }
+      Map<String, Object> data = next.apply(current == null ? null : current.data());
+      if (data == null) {
+        if (current != null) {
+          collection.documents.remove(docID);
+          collection.count.decrementAndGet();
+        }
+      } else {
+        long version = current == null ? 1 : current.version() + 1;
+        collection.documents.put(docID, new Versioned(data, version));
+        if (current == null) {
+          collection.count.incrementAndGet();
+        }
+      }
+      // a reader between the two updates may find a stale entry; current() skips those
+      for (Map.Entry<String, NavigableSet<IndexKey>> index : collection.indexes.entrySet()) {
+        Object before = current == null ? null : current.data().get(index.getKey());
+        Object after = data == null ? null : data.get(index.getKey());
+        if (Objects.equals(before, after)) {
+          continue;
+        }
+        if (before != null) {
+          index.getValue().remove(new IndexKey(before, docID));
+        }
+        if (after != null) {
+          index.getValue().add(new IndexKey(after, docID));
+        }
+      }
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Documents whose field equals value, ordered by document ID. */
+  private List<Map<String, Object>> whereEqual(String collectionID, String field, Object value) {
+    List<Map<String, Object>> matches = new ArrayList<>();
+    for (Map.Entry<String, Map<String, Object>> match :
+        this.whereEqual(collectionID, field, value, null, Integer.MAX_VALUE)) {
+      matches.add(match.getValue());
+    }
+    return matches;
+  }
+
+  /**
+   * Documents whose field equals value, with their IDs, ordered by document ID.
+   *
+   * @param after ID the documents must come after, or null to start at the first
+   * @param max most documents to return
+   */
+  private List<Map.Entry<String, Map<String, Object>>> whereEqual(
+      String collectionID, String field, Object value, String after, int max) {
+    Collection collection = this.collection(collectionID);
+    List<Map.Entry<String, Map<String, Object>>> matches = new ArrayList<>();
+    if (value == null) {
+      return matches;
+    }
+    NavigableSet<IndexKey> index = collection.indexes.get(field);
+    if (index == null) {
+      Map<String, Versioned> documents =
+          after == null ? collection.documents : collection.documents.tailMap(after, false);
+      for (Map.Entry<String, Versioned> document : documents.entrySet()) {
+        if (matches.size() >= max) {
+          break;
+        }
+        Object stored = document.getValue().data().get(field);
+        if (stored != null && DocumentMaps.compareValues(stored, value) == 0) {
+          matches.add(Map.entry(document.getKey(), document.getValue().data()));
+        }
+      }
+      return matches;
+    }
+    // the entries of one value are next to each other, in document ID order, so a page starts
+    // right after the entry of the previous page's last document
+    for (IndexKey key : index.tailSet(new IndexKey(value, after), after == null)) {
+      if (matches.size() >= max || DocumentMaps.compareValues(key.value(), value) != 0) {
+        break;
+      }
+      Map<String, Object> document = current(collection, field, key);
+      if (document != null) {
+        matches.add(Map.entry(key.docID(), document));
+      }
+    }
+    return matches;
+  }
+
+  /** The index of a field, or if it is not indexed, one built from the documents right now. */
+  private NavigableSet<IndexKey> index(Collection collection, String field) {
+    NavigableSet<IndexKey> index = collection.indexes.get(field);
+    if (index != null) {
+      return index;
+    }
+    NavigableSet<IndexKey> built = new TreeSet<>(INDEX_ORDER);
+    for (Map.Entry<String, Versioned> entry : collection.documents.entrySet()) {
+      Object value = entry.getValue().data().get(field);
+      if (value != null) {
+        built.add(new IndexKey(value, entry.getKey()));
+      }
+    }
+    return built;
+  }
+
+  /** The stored document an index entry points to, or null if the entry is stale. */
+  private static Map<String, Object> current(Collection collection, String field, IndexKey key) {
+    Versioned document = collection.documents.get(key.docID());
+    if (document == null
+        || document.data().get(field) == null
+        || DocumentMaps.compareValues(document.data().get(field), key.value()) != 0) {
+      return null;
+    }
+    return document.data();
+  }
+
+  private Collection collection(String collectionID) {
+    return this.collections.computeIfAbsent(collectionID, id -> new Collection(this.indexedFields));
+  }
+
+  /** A new document with the changes merged into a copy of the current one, if there is one. */
+  private static Map<String, Object> merged(
+      Map<String, Object> current, Map<String, Object> changes) {
+    Map<String, Object> merged = current == null ? new HashMap<>() : DocumentMaps.deepCopy(current);
+    DocumentMaps.merge(merged, changes);
+    return merged;
+  }
+
+  private static Map<String, Object> copy(Map<String, Object> document, Set<String> fields) {
+    return DocumentMaps.deepCopy(
+        fields == null ? document : DocumentMaps.project(document, fields));
+  }
+
+  /** The documents of one collection, sorted by ID, and its indexes. */
+  private static final class Collection {
+    private final ConcurrentSkipListMap<String, Versioned> documents =
+        new ConcurrentSkipListMap<>();
+    // the skip list's size() walks every document, so the count is kept alongside
+    private final AtomicLong count = new AtomicLong();
+    private final Map<String, NavigableSet<IndexKey>> indexes = new HashMap<>();
+
+    Collection(Set<String> indexedFields) {
+      for (String field : indexedFields) {
+        this.indexes.put(field, new ConcurrentSkipListSet<>(INDEX_ORDER));
+      }
+    }
+  }
+
+  /** A stored document, never changed once stored, and its version. */
+  private record Versioned(Map<String, Object> data, long version) {}
+
+  /** An index entry: the value of the indexed field and the ID of the document holding it. */
+  private record IndexKey(Object value, String docID) {}
+}
@@ -0,0 +1,10 @@
+package edu.brown.cs.student.storage;
+
+/**
+ * A field value in the changes returned to {@link IStorage#transact}, adding to the stored number
+ * instead of replacing it. A field that is missing or not a number is set to the amount. The amount
+ * is whole so counters stored as integers stay integers.
+ *
+ * @param amount amount to add
+ */
+public record Increment(long amount) {}
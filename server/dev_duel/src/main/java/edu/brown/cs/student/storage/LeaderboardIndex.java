@@ -0,0 +1,177 @@
+package edu.brown.cs.student.storage;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * LeaderboardIndex keeps users ordered by wins in memory, so the leaderboard is read without
+ * touching the Users collection. It is loaded once from storage and then updated by the endpoints
+ * that change a user's wins. Entries only hold what the leaderboard shows, never the code history.
+ * Users are kept in an order statistic tree, so ranks and pages are found in logarithmic time.
+ */
+public class LeaderboardIndex {
+  // most wins first, ties broken by userID so every user has a fixed place
+  private static final Comparator<Entry> ORDER =
+      Comparator.comparingDouble(Entry::wins).reversed().thenComparing(Entry::userID);
+
+  private final OrderStatisticTree<Entry> ranking = new OrderStatisticTree<>(ORDER);
+  private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+  // readers share the tree, an update moves a user in it alone
+  private final ReadWriteLock rankingLock = new ReentrantReadWriteLock();
+
+  /**
+   * Builds the index from every document of the Users collection.
+   *
+   * @param storage storage holding the Users collection
+   * @return the loaded index
+   */
+  public static LeaderboardIndex load(IStorage storage)
+      throws ExecutionException, InterruptedException {
+    LeaderboardIndex index = new LeaderboardIndex();
+    for (Map<String, Object> user : storage.getCollection("Users")) {
+      index.update(user);
+    }
+    return index;
+  }
+
+  /**
+   * Adds a user or moves them to their new place.
+   *
+   * @param userID ID of the user
+   * @param displayName name shown on the leaderboard
+   * @param wins number of wins
+   */
+  public void update(String userID, String displayName, double wins) {
+    Entry updated = new Entry(userID, displayName, wins);
+    this.rankingLock.writeLock().lock();
+    try {
+      Entry previous = this.entries.put(userID, updated);
+      if (previous != null) {
+        this.ranking.remove(previous);
+      }
+      this.ranking.add(updated);
+    } finally {
+      this.rankingLock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Adds or moves a user from their document. Documents without a userID or a numeric wins field
+   * are ignored.
+   *
+   * @param user the user document
+   */
+  public void update(Map<String, Object> user) {
+    Object userID = user.get("userID");
+    Object wins = user.get("wins");
+    if (userID == null || wins == null) {
+      return;
+    }
+    try {
+      this.update(
+          userID.toString(),
+          String.valueOf(user.get("displayName")),
+          Double.parseDouble(wins.toString()));
+    } catch (NumberFormatException e) {
+      System.out.println("__LEADERBOARD_WINS_ERR__: " + userID + " has wins " + wins);
+    }
+  }
+
+  /**
+   * Returns one page of the leaderboard starting after a cursor, so following pages stay in place
+   * when users above them gain wins. Finding the start of the page takes logarithmic time, however
+   * deep it is.
+   *
+   * @param limit maximum number of users to return
+   * @param offset number of users to skip after the cursor
+   * @param cursor nextCursor of the previous page, or null for the first page
+   * @return userID, displayName, wins and rank of each user on the page, best first
+   * @throws IllegalArgumentException if the cursor is invalid
+   */
+  public Page page(int limit, int offset, String cursor) {
+    Entry last = cursor == null ? null : Entry.atPlace(Page.decodeCursor(cursor));
+    List<Map<String, Object>> read = new ArrayList<>();
+    // the cursor holds the place of the last user rather than only their ID, as they may move
+    List<String> places = new ArrayList<>();
+    this.rankingLock.readLock().lock();
+    try {
+      // the cursor's user may have moved since, so count up to its old place rather than find it
+      long start = (last == null ? 0 : this.ranking.countBefore(last, true)) + (long) offset;
+      for (long index = start; read.size() <= limit && index < this.ranking.size(); index++) {
+        Entry entry = this.ranking.get((int) index);
+        read.add(entry.toMap((int) index + 1));
+        places.add(entry.place());
+      }
+    } finally {
+      this.rankingLock.readLock().unlock();
+    }
+    return Page.of(read, places, limit);
+  }
+
+  /**
+   * Returns the place of a user, in logarithmic time.
+   *
+   * @param userID ID of the user
+   * @return userID, displayName, wins and rank of the user, or null if the user is not indexed
+   */
+  public Map<String, Object> rankOf(String userID) {
+    this.rankingLock.readLock().lock();
+    try {
+      Entry entry = this.entries.get(userID);
+      if (entry == null) {
+        return null;
+      }
+      return entry.toMap(this.ranking.countBefore(entry, false) + 1);
+    } finally {
+      this.rankingLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * @return number of indexed users
+   */
+  public int size() {
+    return this.entries.size();
+  }
+
+  private record Entry(String userID, String displayName, double wins) {
+    /**
+     * @param place a place made by {@link #place()}
+     * @return an entry at that place, to search the ranking with
+     * @throws IllegalArgumentException if the place was not made by {@link #place()}
+     */
+    static Entry atPlace(String place) {
+      int split = place.indexOf(' ');
+      try {
+        return new Entry(
+            place.substring(split + 1), "", Double.parseDouble(place.substring(0, split)));
+      } catch (IndexOutOfBoundsException | NumberFormatException e) {
+        throw new IllegalArgumentException("Invalid cursor place: " + place);
+      }
+    }
+
+    /**
+     * @return the wins and userID that fix the place of the entry in the ranking
+     */
+    String place() {
+      return this.wins + " " + this.userID;
+    }
+
+    Map<String, Object> toMap(int rank) {
+      Map<String, Object> map = new HashMap<>();
+      map.put("userID", this.userID);
+      map.put("displayName", this.displayName);
+      map.put("wins", this.wins);
+      map.put("rank", rank);
+      return map;
+    }
+  }
+}
@@ -0,0 +1,188 @@
+package edu.brown.cs.student.storage;
+
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * OrderStatisticTree is a sorted set that also knows the position of its elements. It is a treap
+ * whose nodes count the elements below them, so finding the position of an element and the element
+ * at a position both take logarithmic time instead of walking the elements ranked before it. It is
+ * not thread safe; callers guard it with their own lock.
+ *
+ * @param <E> type of the elements
+ */
+final class OrderStatisticTree<E> {
+  private final Comparator<? super E> order;
+  private Node<E> root = null;
+
+  private static final class Node<E> {
+    private final E value;
+    private final int priority = ThreadLocalRandom.current().nextInt();
+    private Node<E> left = null;
+    private Node<E> right = null;
+    private int size = 1;
+
+    private Node(E value) {
+      this.value = value;
+    }
+  }
+
+  /** The two subtrees a split leaves, either of which may be empty. */
+  private record Halves<E>(Node<E> before, Node<E> rest) {}
+
+  /**
+   * @param order order of the elements, elements comparing equal are the same element
+   */
+  OrderStatisticTree(Comparator<? super E> order) {
+    this.order = order;
+  }
+
+  /**
+   * @return number of elements
+   */
+  int size() {
+    return size(this.root);
+  }
+
+  /**
+   * Adds an element unless an equal one is already in the tree.
+   *
+   * @param value element to add
+   * @return true if the element was added
+   */
+  boolean add(E value) {
+    if (this.contains(value)) {
+      return false;
+    }
+    Halves<E> halves = this.split(this.root, value);
+    this.root = merge(merge(halves.before(), new Node<>(value)), halves.rest());
+    return true;
+  }
+
+  /**
+   * @param value element to remove
+   * @return true if the element was in the tree
+   */
+  boolean remove(E value) {
+    int before = this.size();
+    this.root = this.remove(this.root, value);
+    return this.size() < before;
+  }
+
+  /**
+   * @param value element to look for
+   * @return true if an equal element is in the tree
+   */
+  boolean contains(E value) {
+    Node<E> node = this.root;
+    while (node != null) {
+      int comparison = this.order.compare(value, node.value);
+      if (comparison == 0) {
+        return true;
+      }
+      node = comparison < 0 ? node.left : node.right;
+    }
+    return false;
+  }
+
+  /**
+   * Counts the elements ordered before a value. The value does not have to be in the tree.
+   *
+   * @param value value to count up to
+   * @param inclusive whether an element equal to the value is counted
+   * @return number of elements before the value
+   */
+  int countBefore(E value, boolean inclusive) {
+    int count = 0;
+    Node<E> node = this.root;
+    while (node != null) {
+      int comparison = this.order.compare(value, node.value);
+      if (comparison < 0 || (comparison == 0 && !inclusive)) {
+        node = node.left;
+      } else {
+        count += size(node.left) + 1;
+        node = node.right;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * @param index position of the element, starting at 0
+   * @return the element at the position
+   * @throws IndexOutOfBoundsException if the position is outside the tree
+   */
+  E get(int index) {
+    if (index < 0 || index >= this.size()) {
+      throw new IndexOutOfBoundsException(index);
+    }
+    Node<E> node = this.root;
+    while (true) {
+      int leftSize = size(node.left);
+      if (index < leftSize) {
+        node = node.left;
+      } else if (index == leftSize) {
+        return node.value;
+      } else {
+        index -= leftSize + 1;
+        node = node.right;
+      }
+    }
+  }
+
+  /** Splits a subtree into the elements ordered before a value and the rest. */
+  private Halves<E> split(Node<E> node, E value) {
+    if (node == null) {
+      return new Halves<>(null, null);
+    }
+    if (this.order.compare(node.value, value) < 0) {
+      Halves<E> halves = this.split(node.right, value);
+      node.right = halves.before();
+      return new Halves<>(update(node), halves.rest());
+    }
+    Halves<E> halves = this.split(node.left, value);
+    node.left = halves.rest();
+    return new Halves<>(halves.before(), update(node));
+  }
+
+  private Node<E> remove(Node<E> node, E value) {
+    if (node == null) {
+      return null;
+    }
+    int comparison = this.order.compare(value, node.value);
+    if (comparison == 0) {
+      return merge(node.left, node.right);
+    }
+    if (comparison < 0) {
+      node.left = this.remove(node.left, value);
+    } else {
+      node.right = this.remove(node.right, value);
+    }
+    return update(node);
+  }
+
+  /** Joins two subtrees where every element of the first is ordered before the second. */
+  private static <E> Node<E> merge(Node<E> first, Node<E> second) {
+    if (first == null) {
+      return second;
+    }
+    if (second == null) {
+      return first;
+    }
+    if (first.priority > second.priority) {
+      first.right = merge(first.right, second);
+      return update(first);
+    }
+    second.left = merge(first, second.left);
+    return update(second);
+  }
+
+  private static <E> Node<E> update(Node<E> node) {
+    node.size = size(node.left) + size(node.right) + 1;
+    return node;
+  }
+
+  private static int size(Node<?> node) {
+    return node == null ? 0 : node.size;
+  }
+}
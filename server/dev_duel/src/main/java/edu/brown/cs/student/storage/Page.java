@@ -0,0 +1,69 @@
+package edu.brown.cs.student.storage;
+
+import edu.brown.cs.student.util.JsonUtil;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One page of a paginated read. The next page is read by passing nextCursor back; it is null on the
+ * last page. Cursors are opaque to clients: they encode the ID of the last document of the page, so
+ * reading the next page costs the same however far into the collection it is.
+ *
+ * @param documents the documents of this page
+ * @param nextCursor cursor of the next page, or null if there is none
+ */
+public record Page(List<Map<String, Object>> documents, String nextCursor) {
+
+  /**
+   * Builds the page from up to limit + 1 documents read after the cursor: the extra document only
+   * tells whether there is a next page.
+   *
+   * @param read the documents read, at most limit + 1
+   * @param ids IDs of the documents read, in the same order
+   * @param limit page size
+   * @return the page
+   */
+  static Page of(List<Map<String, Object>> read, List<String> ids, int limit) {
+    if (read.size() <= limit) {
+      return new Page(read, null);
+    }
+    if (limit < 1) {
+      return new Page(List.of(), null);
+    }
+    return new Page(read.subList(0, limit), encodeCursor(ids.get(limit - 1)));
+  }
+
+  /**
+   * @param docID ID of the last document of a page
+   * @return the opaque cursor of the page after it
+   */
+  public static String encodeCursor(String docID) {
+    Map<String, Object> position = new HashMap<>();
+    position.put("id", docID);
+    return Base64.getUrlEncoder()
+        .withoutPadding()
+        .encodeToString(JsonUtil.toMoshiJson(position).getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * @param cursor a cursor made by {@link #encodeCursor}
+   * @return the ID of the last document of the page before
+   * @throws IllegalArgumentException if the cursor was not made by {@link #encodeCursor}
+   */
+  public static String decodeCursor(String cursor) {
+    Map<String, Object> position = null;
+    try {
+      position =
+          JsonUtil.toMap(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+    } catch (IllegalArgumentException e) {
+      // not base64, reported below like any other malformed cursor
+    }
+    if (position == null || !(position.get("id") instanceof String)) {
+      throw new IllegalArgumentException("Invalid cursor: " + cursor);
+    }
+    return (String) position.get("id");
+  }
+}
@@ -0,0 +1,171 @@
+package edu.brown.cs.student.storage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ProblemCatalog keeps every problem in memory, indexed by ID, by name and by difficulty, so
+ * choosing and fetching problems needs no remote reads. The catalog is replaced as a whole on each
+ * refresh, so readers always see one consistent snapshot without locking.
+ */
+public class ProblemCatalog {
+  private final Loader loader;
+  private volatile Snapshot snapshot;
+  private ScheduledExecutorService refresher;
+
+  /**
+   * @param loader loads every document of the Problems collection
+   */
+  public ProblemCatalog(Loader loader) {
+    this.loader = loader;
+  }
+
+  /**
+   * Loads the catalog now and then reloads it periodically in the background. A failed reload keeps
+   * the previous catalog.
+   *
+   * @param period time between reloads
+   * @param unit unit of period
+   * @throws ExecutionException if the first load fails
+   */
+  public synchronized void startRefreshing(long period, TimeUnit unit)
+      throws ExecutionException, InterruptedException {
+    this.refresh();
+    if (this.refresher != null) {
+      return;
+    }
+    this.refresher =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "problem-catalog-refresh");
+              thread.setDaemon(true);
+              return thread;
+            });
+    this.refresher.scheduleWithFixedDelay(
+        () -> {
+          try {
+            this.refresh();
+          } catch (Exception e) {
+            System.out.println("__PROBLEM_CATALOG_REFRESH_ERR__: " + e.getMessage());
+          }
+        },
+        period,
+        period,
+        unit);
+  }
+
+  /**
+   * Reloads every problem and swaps in the new catalog.
+   *
+   * @throws ExecutionException if the problems cannot be loaded
+   */
+  public void refresh() throws ExecutionException, InterruptedException {
+    this.snapshot = new Snapshot(this.loader.load());
+  }
+
+  /**
+   * Picks distinct random problems of a difficulty.
+   *
+   * @param difficulty difficulty of the problems
+   * @param number number of problems to pick; all of them are returned if there are fewer
+   * @return the picked problems in random order
+   */
+  public List<Map<String, Object>> getProblems(String difficulty, int number)
+      throws ExecutionException, InterruptedException {
+    Snapshot current = this.current();
+    List<String> ids = current.idsByDifficulty.getOrDefault(difficulty, List.of());
+    List<Map<String, Object>> problems = new ArrayList<>();
+    for (int index : sampleIndices(ids.size(), Math.min(number, ids.size()))) {
+      problems.add(current.byID.get(ids.get(index)));
+    }
+    return problems;
+  }
+
+  /**
+   * @param problemID ID of the problem
+   * @return the problem, or null if there is none with this ID
+   */
+  public Map<String, Object> getProblem(String problemID)
+      throws ExecutionException, InterruptedException {
+    return this.current().byID.get(problemID);
+  }
+
+  /**
+   * @param name name of the problem
+   * @return the problem, or null if there is none with this name
+   */
+  public Map<String, Object> getProblemByName(String name)
+      throws ExecutionException, InterruptedException {
+    return this.current().byName.get(name);
+  }
+
+  /** Returns the catalog, loading it on first use if refreshing was never started. */
+  private Snapshot current() throws ExecutionException, InterruptedException {
+    Snapshot current = this.snapshot;
+    if (current == null) {
+      synchronized (this) {
+        if (this.snapshot == null) {
+          this.refresh();
+        }
+        current = this.snapshot;
+      }
+    }
+    return current;
+  }
+
+  /**
+   * Samples k distinct indices out of [0, n) with Floyd's algorithm, which takes O(k) time and
+   * space however large n is.
+   *
+   * @param n size of the range
+   * @param k number of indices, at most n
+   * @return the sampled indices in random order
+   */
+  static List<Integer> sampleIndices(int n, int k) {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    Set<Integer> chosen = new HashSet<>();
+    List<Integer> sample = new ArrayList<>(k);
+    for (int j = n - k; j < n; j++) {
+      int candidate = random.nextInt(j + 1);
+      // if candidate was already taken, j is free: no earlier round could pick above its own j
+      int pick = chosen.contains(candidate) ? j : candidate;
+      chosen.add(pick);
+      sample.add(pick);
+    }
+    Collections.shuffle(sample, random);
+    return sample;
+  }
+
+  /** Loads every document of the Problems collection. */
+  public interface Loader {
+    List<Map<String, Object>> load() throws ExecutionException, InterruptedException;
+  }
+
+  /** One loaded version of the catalog. */
+  private static class Snapshot {
+    private final Map<String, Map<String, Object>> byID = new HashMap<>();
+    private final Map<String, Map<String, Object>> byName = new HashMap<>();
+    private final Map<String, List<String>> idsByDifficulty = new HashMap<>();
+
+    Snapshot(List<Map<String, Object>> problems) {
+      for (Map<String, Object> problem : problems) {
+        String problemID = String.valueOf(problem.get("problemID"));
+        this.byID.put(problemID, problem);
+        this.byName.put(String.valueOf(problem.get("name")), problem);
+        this.idsByDifficulty
+            .computeIfAbsent(String.valueOf(problem.get("difficulty")), d -> new ArrayList<>())
+            .add(problemID);
+      }
+    }
+  }
+}
@@ -0,0 +1,188 @@
+package edu.brown.cs.student.storage;
+
+import edu.brown.cs.student.util.JsonUtil;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * RoomRegistry keeps the state of every room in memory and pushes each change to the clients
+ * subscribed to it, so clients no longer poll RoomList or RoomInfo. Subscribers listen to topics:
+ * {@link #LOBBY} receives changes to every room, and {@link #roomTopic(String)} only changes to one
+ * room. A new subscriber first gets a snapshot of its topic, then one message per change.
+ *
+ * <p>Messages are json objects with a "type" field:
+ *
+ * <ul>
+ *   <li>snapshot: "rooms" (lobby) or "room" (room topic, null if it does not exist)
+ *   <li>room_updated: "roomID" and "delta", the fields that changed, to be merged into the room
+ *   <li>room_deleted: "roomID"
+ * </ul>
+ *
+ * <p>Clients merge changes in the order they arrive, so every subscriber must get the changes to a
+ * room in the order they were made. A change is published while the room's entry is locked, and a
+ * snapshot is taken and its subscriber added while no change is being made.
+ */
+public class RoomRegistry {
+  public static final String LOBBY = "lobby";
+
+  private final ConcurrentMap<String, Map<String, Object>> rooms = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Set<Consumer<String>>> subscribers =
+      new ConcurrentHashMap<>();
+  // changes hold the read lock, so changes to different rooms still run at once
+  private final ReadWriteLock snapshotLock = new ReentrantReadWriteLock();
+
+  /**
+   * @param roomID ID of a room
+   * @return the topic of changes to that room
+   */
+  public static String roomTopic(String roomID) {
+    return "room:" + roomID;
+  }
+
+  /**
+   * Replaces the registry with every document of the Rooms collection. Called once at startup.
+   *
+   * @param storage storage holding the Rooms collection
+   */
+  public void load(IStorage storage) throws ExecutionException, InterruptedException {
+    this.rooms.clear();
+    for (Map<String, Object> room : storage.getCollection("Rooms")) {
+      Object roomID = room.get("roomID");
+      if (roomID != null) {
+        this.rooms.put(roomID.toString(), DocumentMaps.deepCopy(room));
+      }
+    }
+  }
+
+  /**
+   * Merges a change into a room, creating it if needed, and publishes the change to the lobby and
+   * the room's topic. Nested maps such as players are merged, not replaced, like a firestore merge.
+   *
+   * @param roomID ID of the room
+   * @param delta the fields that changed
+   */
+  public void update(String roomID, Map<String, Object> delta) {
+    Map<String, Object> message = new HashMap<>();
+    message.put("type", "room_updated");
+    message.put("roomID", roomID);
+    message.put("delta", delta);
+    String json = JsonUtil.toMoshiJson(message);
+    this.change(
+        roomID,
+        room -> {
+          Map<String, Object> updated =
+              room == null ? new HashMap<>() : DocumentMaps.deepCopy(room);
+          DocumentMaps.merge(updated, delta);
+          return updated;
+        },
+        json);
+  }
+
+  /**
+   * Removes a room and publishes its deletion to the lobby and the room's topic.
+   *
+   * @param roomID ID of the room
+   */
+  public void remove(String roomID) {
+    this.change(
+        roomID,
+        room -> null,
+        JsonUtil.toMoshiJson(Map.of("type", "room_deleted", "roomID", roomID)));
+  }
+
+  /**
+   * Subscribes to a topic and sends the subscriber a snapshot of it.
+   *
+   * @param topic {@link #LOBBY} or a {@link #roomTopic(String)}
+   * @param subscriber receives the json messages; must not block
+   */
+  public void subscribe(String topic, Consumer<String> subscriber) {
+    Map<String, Object> snapshot = new HashMap<>();
+    snapshot.put("type", "snapshot");
+    snapshot.put("topic", topic);
+    // no change may land between the snapshot and the subscription, or it would be missed, and
+    // none may be sent before the snapshot, which would then overwrite it
+    this.snapshotLock.writeLock().lock();
+    try {
+      this.subscribers.computeIfAbsent(topic, t -> ConcurrentHashMap.newKeySet()).add(subscriber);
+      if (topic.equals(LOBBY)) {
+        snapshot.put("rooms", new ArrayList<>(this.rooms.values()));
+      } else {
+        snapshot.put("room", this.rooms.get(topic.substring(topic.indexOf(':') + 1)));
+      }
+      subscriber.accept(JsonUtil.toMoshiJson(snapshot));
+    } finally {
+      this.snapshotLock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * @param topic the topic to stop listening to
+   * @param subscriber the subscriber to remove
+   */
+  public void unsubscribe(String topic, Consumer<String> subscriber) {
+    Set<Consumer<String>> topicSubscribers = this.subscribers.get(topic);
+    if (topicSubscribers != null) {
+      topicSubscribers.remove(subscriber);
+    }
+  }
+
+  /**
+   * Removes a subscriber from every topic, e.g. when its connection closes.
+   *
+   * @param subscriber the subscriber to remove
+   */
+  public void unsubscribeAll(Consumer<String> subscriber) {
+    for (Set<Consumer<String>> topicSubscribers : this.subscribers.values()) {
+      topicSubscribers.remove(subscriber);
+    }
+  }
+
+  /**
+   * Changes a room and publishes the message about it while the room's entry is locked, so two
+   * changes to a room are published in the order they were made.
+   *
+   * @param roomID ID of the room
+   * @param changes given the room (null if there is none), returns it changed, or null to remove it
+   * @param message json message to publish
+   */
+  private void change(String roomID, UnaryOperator<Map<String, Object>> changes, String message) {
+    this.snapshotLock.readLock().lock();
+    try {
+      this.rooms.compute(
+          roomID,
+          (id, room) -> {
+            Map<String, Object> changed = changes.apply(room);
+            // subscribers do not block, so the entry is only locked for as long as sending takes
+            this.publish(roomID, message);
+            return changed;
+          });
+    } finally {
+      this.snapshotLock.readLock().unlock();
+    }
+  }
+
+  private void publish(String roomID, String message) {
+    for (String topic : List.of(LOBBY, roomTopic(roomID))) {
+      for (Consumer<String> subscriber : this.subscribers.getOrDefault(topic, Set.of())) {
+        try {
+          subscriber.accept(message);
+        } catch (RuntimeException e) {
+          // one broken connection must not keep the others from hearing about the change
+          System.out.println("__ROOM_PUBLISH_ERR__: " + e.getMessage());
+          this.unsubscribeAll(subscriber);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,110 @@
+package edu.brown.cs.student.storage;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * The Submissions collection holds each user's best submission per problem, one document per
+ * (userID, problemID), so user documents stay small however many problems a user has solved.
+ * Documents have the fields userID, problemID, score, code and date.
+ */
+public final class Submissions {
+  public static final String COLLECTION = "Submissions";
+
+  private Submissions() {}
+
+  /**
+   * @param userID ID of the user
+   * @param problemID ID of the problem
+   * @return ID of the user's submission document for the problem
+   */
+  public static String documentID(String userID, String problemID) {
+    return userID + "_problem" + problemID;
+  }
+
+  /**
+   * Moves the code history kept in user documents under "code" into the Submissions collection,
+   * then removes it from the user documents. A submission already in the collection is only
+   * replaced by a migrated one with a score at least as good. Running it again does nothing, since
+   * migrated users have no code history left. Meant to run once, while the server is stopped,
+   * because the user documents are rewritten as a whole.
+   *
+   * @param storage storage holding the Users and Submissions collections
+   * @return number of submissions moved
+   */
+  public static int migrate(IStorage storage) throws ExecutionException, InterruptedException {
+    int moved = 0;
+    for (Map<String, Object> user : storage.getCollection("Users")) {
+      if (!(user.get("code") instanceof Map<?, ?> history) || user.get("userID") == null) {
+        continue;
+      }
+      String userID = user.get("userID").toString();
+      for (Map.Entry<?, ?> entry : history.entrySet()) {
+        if (!(entry.getValue() instanceof Map<?, ?> problem) || problem.get("score") == null) {
+          System.out.println("__SUBMISSION_MIGRATION_ERR__: skipped " + userID + " " + entry);
+          continue;
+        }
+        String problemID = entry.getKey().toString().replaceFirst("^problem", "");
+        Map<String, Object> submission =
+            submission(
+                userID,
+                problemID,
+                problem.get("score").toString(),
+                String.valueOf(problem.get("code")),
+                String.valueOf(problem.get("date")));
+        storage.transact(
+            COLLECTION,
+            documentID(userID, problemID),
+            existing ->
+                existing == null || !isBetter(existing.get("score"), submission.get("score"))
+                    ? submission
+                    : null);
+        moved++;
+      }
+      // written back without the history only after every submission is stored
+      Map<String, Object> slimmed = new HashMap<>(user);
+      slimmed.remove("code");
+      storage.addDocument("Users", userID, slimmed);
+    }
+    return moved;
+  }
+
+  /**
+   * @return the fields of a submission document
+   */
+  public static Map<String, Object> submission(
+      String userID, String problemID, String score, String code, String date) {
+    Map<String, Object> submission = new HashMap<>();
+    submission.put("userID", userID);
+    submission.put("problemID", problemID);
+    submission.put("score", score);
+    submission.put("code", code);
+    submission.put("date", date);
+    return submission;
+  }
+
+  /**
+   * Converts a score, a fraction of passed tests like "4/5" or a plain number, to a number.
+   *
+   * @param score the score
+   * @return the score as a decimal
+   * @throws IllegalArgumentException if the score is neither
+   */
+  public static double scoreValue(String score) {
+    try {
+      if (score.contains("/")) {
+        String[] fractionParts = score.split("/");
+        return Double.parseDouble(fractionParts[0]) / Double.parseDouble(fractionParts[1]);
+      }
+      return Double.parseDouble(score);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid score format: " + score);
+    }
+  }
+
+  /** Whether a stored score beats a new one, so the new submission must not replace it. */
+  private static boolean isBetter(Object stored, Object candidate) {
+    return stored != null && scoreValue(stored.toString()) > scoreValue(String.valueOf(candidate));
+  }
+}
@@ -0,0 +1,322 @@
+package edu.brown.cs.student.storage;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * WriteBehindStorage buffers {@link #updateDocument} calls and writes them to the wrapped storage
+ * in batches. Updates to the same document are merged while they wait, so a busy room sending many
+ * score updates costs one write per flush instead of one per update. Everything else goes straight
+ * to the wrapped storage.
+ *
+ * <p>Reads stay consistent with the buffered writes: {@link #getDocument} merges the waiting
+ * updates into what storage returns, and the reads over a whole collection flush first, but only
+ * when updates to that collection are waiting. Writes that fail to flush are put back and retried
+ * on the next flush.
+ */
+public class WriteBehindStorage implements IStorage, AutoCloseable {
+  private final IStorage storage;
+  private final int maxPending;
+  private final ScheduledExecutorService flusher;
+  private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+  // updates waiting for the next flush, already merged per document
+  private final ConcurrentMap<DocumentKey, Pending> pending = new ConcurrentHashMap<>();
+  // updates taken by the running flush, kept readable until they are committed
+  private final ConcurrentMap<DocumentKey, Pending> inFlight = new ConcurrentHashMap<>();
+
+  private final AtomicLong queuedWrites = new AtomicLong();
+  private final AtomicLong flushedWrites = new AtomicLong();
+  private final AtomicLong flushes = new AtomicLong();
+  private final AtomicLong flushFailures = new AtomicLong();
+  private final AtomicLong totalLagMillis = new AtomicLong();
+  private final AtomicLong maxLagMillis = new AtomicLong();
+
+  /**
+   * @param storage storage the updates are written to
+   * @param flushMillis time between flushes
+   * @param maxPending number of waiting documents that triggers a flush before the timer does
+   */
+  public WriteBehindStorage(IStorage storage, long flushMillis, int maxPending) {
+    this.storage = storage;
+    this.maxPending = maxPending;
+    this.flusher =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "write-behind-flush");
+              thread.setDaemon(true);
+              return thread;
+            });
+    this.flusher.scheduleWithFixedDelay(
+        this::flushQuietly, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public void updateDocument(String collection_id, String doc_id, Map<String, Object> data)
+      throws IllegalArgumentException {
+    if (collection_id == null || doc_id == null || data == null) {
+      throw new IllegalArgumentException(
+          "updateDocument: collection_id, doc_id, or data cannot be null");
+    }
+    // a new map on every merge, so getDocument never reads a map being changed
+    this.pending.compute(
+        new DocumentKey(collection_id, doc_id),
+        (key, previous) -> {
+          if (previous == null) {
+            return new Pending(DocumentMaps.deepCopy(data), System.nanoTime());
+          }
+          Map<String, Object> merged = DocumentMaps.deepCopy(previous.data());
+          DocumentMaps.merge(merged, data);
+          return new Pending(merged, previous.queuedAt());
+        });
+    this.queuedWrites.incrementAndGet();
+    if (this.pending.size() >= this.maxPending && this.flushScheduled.compareAndSet(false, true)) {
+      this.flusher.execute(this::flushQuietly);
+    }
+  }
+
+  /**
+   * Writes every waiting update to storage as one batch. Flushes run one at a time, so updates to a
+   * document reach storage in the order they were made.
+   *
+   * @throws ExecutionException if the batch could not be written; its updates are kept for the next
+   *     flush
+   */
+  public synchronized void flush() throws ExecutionException, InterruptedException {
+    this.flushScheduled.set(false);
+    if (this.pending.isEmpty()) {
+      return;
+    }
+    long now = System.nanoTime();
+    long lagNanos = 0;
+    List<DocumentUpdate> batch = new ArrayList<>();
+    for (DocumentKey key : this.pending.keySet()) {
+      // moved to inFlight before leaving pending, so a concurrent read always finds it somewhere
+      this.pending.computeIfPresent(
+          key,
+          (k, waiting) -> {
+            this.inFlight.put(k, waiting);
+            return null;
+          });
+    }
+    for (Map.Entry<DocumentKey, Pending> taken : this.inFlight.entrySet()) {
+      DocumentKey key = taken.getKey();
+      batch.add(new DocumentUpdate(key.collectionID(), key.docID(), taken.getValue().data()));
+      lagNanos = Math.max(lagNanos, now - taken.getValue().queuedAt());
+    }
+    try {
+      this.storage.updateDocuments(batch);
+      this.flushes.incrementAndGet();
+      this.flushedWrites.addAndGet(batch.size());
+      long lagMillis = TimeUnit.NANOSECONDS.toMillis(lagNanos);
+      this.totalLagMillis.addAndGet(lagMillis);
+      this.maxLagMillis.accumulateAndGet(lagMillis, Math::max);
+    } catch (ExecutionException | InterruptedException | RuntimeException e) {
+      this.flushFailures.incrementAndGet();
+      // updates made since the batch was taken are newer, so they are merged over the failed ones
+      for (Map.Entry<DocumentKey, Pending> failed : this.inFlight.entrySet()) {
+        this.pending.merge(
+            failed.getKey(),
+            failed.getValue(),
+            (newer, older) -> {
+              Map<String, Object> merged = DocumentMaps.deepCopy(older.data());
+              DocumentMaps.merge(merged, newer.data());
+              return new Pending(merged, older.queuedAt());
+            });
+      }
+      throw e;
+    } finally {
+      this.inFlight.clear();
+    }
+  }
+
+  /** Stops the timer and writes whatever is still waiting, e.g. when the server shuts down. */
+  @Override
+  public void close() {
+    this.flusher.shutdown();
+    this.flushQuietly();
+  }
+
+  /**
+   * @return flushes, batch sizes and how long updates waited before being written
+   */
+  public Map<String, Object> stats() {
+    long flushCount = this.flushes.get();
+    Map<String, Object> stats = new HashMap<>();
+    stats.put("pending", this.pending.size());
+    stats.put("queuedWrites", this.queuedWrites.get());
+    stats.put("flushedWrites", this.flushedWrites.get());
+    stats.put("flushes", flushCount);
+    stats.put("flushFailures", this.flushFailures.get());
+    stats.put(
+        "averageBatchSize", flushCount == 0 ? 0.0 : (double) this.flushedWrites.get() / flushCount);
+    stats.put(
+        "averageLagMillis",
+        flushCount == 0 ? 0.0 : (double) this.totalLagMillis.get() / flushCount);
+    stats.put("maxLagMillis", this.maxLagMillis.get());
+    return stats;
+  }
+
+  /**
+   * Flushes if updates to a collection are waiting or being written, so that a read over the
+   * collection sees them. Reads of collections nobody is writing to never wait for a flush.
+   */
+  private void flushFor(String collectionID) throws ExecutionException, InterruptedException {
+    // pending before inFlight, the path an update takes, so a moving update is not missed
+    if (hasCollection(this.pending, collectionID) || hasCollection(this.inFlight, collectionID)) {
+      this.flush();
+    }
+  }
+
+  private static boolean hasCollection(Map<DocumentKey, Pending> updates, String collectionID) {
+    for (DocumentKey key : updates.keySet()) {
+      if (key.collectionID().equals(collectionID)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void flushQuietly() {
+    try {
+      this.flush();
+    } catch (ExecutionException | RuntimeException e) {
+      System.out.println("__WRITE_BEHIND_FLUSH_ERR__: " + e.getMessage());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Override
+  public Map<String, Object> getDocument(String collection_id, String doc_id)
+      throws InterruptedException, ExecutionException {
+    return this.getDocument(collection_id, doc_id, null);
+  }
+
+  @Override
+  public Map<String, Object> getDocument(String collection_id, String doc_id, Set<String> fields)
+      throws InterruptedException, ExecutionException {
+    DocumentKey key = new DocumentKey(collection_id, doc_id);
+    // pending before inFlight before storage, the reverse of the path an update takes
+    Pending newer = this.pending.get(key);
+    Pending older = this.inFlight.get(key);
+    Map<String, Object> stored = this.storage.getDocument(collection_id, doc_id, fields);
+    if (newer == null && older == null) {
+      return stored;
+    }
+    Map<String, Object> document = stored == null ? new HashMap<>() : DocumentMaps.deepCopy(stored);
+    if (older != null) {
+      DocumentMaps.merge(document, older.data());
+    }
+    if (newer != null) {
+      DocumentMaps.merge(document, newer.data());
+    }
+    // the waiting updates may hold fields that were not selected
+    return fields == null ? document : DocumentMaps.project(document, fields);
+  }
+
+  @Override
+  public Map<String, Object> transact(
+      String collectionID, String docID, Function<Map<String, Object>, Map<String, Object>> changes)
+      throws ExecutionException, InterruptedException {
+    // the transaction has to read what the waiting updates would write
+    this.flush();
+    return this.storage.transact(collectionID, docID, changes);
+  }
+
+  @Override
+  public void addDocument(String collection_id, String doc_id, Map<String, Object> data)
+      throws IllegalArgumentException, ExecutionException, InterruptedException {
+    // waiting merges must land before the overwrite, not after it
+    this.flush();
+    this.storage.addDocument(collection_id, doc_id, data);
+  }
+
+  @Override
+  public void deleteDocument(String collectionID, String docID)
+      throws InterruptedException, ExecutionException {
+    this.pending.remove(new DocumentKey(collectionID, docID));
+    // waits for a running flush, which could otherwise write the document back after the delete
+    this.flush();
+    this.storage.deleteDocument(collectionID, docID);
+  }
+
+  @Override
+  public List<Map<String, Object>> getCollection(String collection_id)
+      throws InterruptedException, ExecutionException {
+    this.flushFor(collection_id);
+    return this.storage.getCollection(collection_id);
+  }
+
+  @Override
+  public Page getDocumentsWhere(
+      String collectionID, String field, Object value, int limit, String cursor)
+      throws InterruptedException, ExecutionException {
+    this.flushFor(collectionID);
+    return this.storage.getDocumentsWhere(collectionID, field, value, limit, cursor);
+  }
+
+  @Override
+  public List<Map<String, Object>> getCollection(String collection_id, Set<String> fields)
+      throws InterruptedException, ExecutionException {
+    this.flushFor(collection_id);
+    return this.storage.getCollection(collection_id, fields);
+  }
+
+  @Override
+  public Page getCollectionPage(String collectionID, Set<String> fields, int limit, String cursor)
+      throws InterruptedException, ExecutionException {
+    this.flushFor(collectionID);
+    return this.storage.getCollectionPage(collectionID, fields, limit, cursor);
+  }
+
+  @Override
+  public long getDocumentCount(String collectionID)
+      throws InterruptedException, ExecutionException {
+    this.flushFor(collectionID);
+    return this.storage.getDocumentCount(collectionID);
+  }
+
+  @Override
+  public List<Map<String, Object>> sortCollection(String collectionID, String field)
+      throws InterruptedException, ExecutionException, IOException {
+    this.flushFor(collectionID);
+    return this.storage.sortCollection(collectionID, field);
+  }
+
+  @Override
+  public List<Map<String, Object>> getProblems(String difficulty, int number)
+      throws InterruptedException, ExecutionException, IOException {
+    return this.storage.getProblems(difficulty, number);
+  }
+
+  @Override
+  public Map<String, Object> getProblem(String problemID)
+      throws InterruptedException, ExecutionException, IOException {
+    return this.storage.getProblem(problemID);
+  }
+
+  @Override
+  public Map<String, Object> getProblemByName(String name)
+      throws InterruptedException, ExecutionException, IOException {
+    return this.storage.getProblemByName(name);
+  }
+
+  private record DocumentKey(String collectionID, String docID) {}
+
+  /** Merged updates to one document and when the first of them was made. */
+  private record Pending(Map<String, Object> data, long queuedAt) {}
+}
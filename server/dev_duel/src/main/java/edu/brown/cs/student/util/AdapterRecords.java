@@ -8,8 +8,21 @@ import java.util.Map;
  * Moshi.
  */
 public class AdapterRecords {
-  /** ProblemRecord is used as a moshi adapter to convert json to java object */
-  public record CodeRecord(String name, String language, String version, String code) {}
+  /**
+   * ProblemRecord is used as a moshi adapter to convert json to java object. With failFast set, the
+   * run stops at the first test that does not pass and the tests after it are skipped.
+   */
+  public record CodeRecord(
+      String name, String language, String version, String code, Boolean failFast) {
+    public CodeRecord {
+      // optional in requests
+      failFast = failFast != null && failFast;
+    }
+
+    public CodeRecord(String name, String language, String version, String code) {
+      this(name, language, version, code, false);
+    }
+  }
 
   /** TestRecord is used as a moshi adapter to convert json to java object */
   public record TestRecord(String params, String expected, String jparams) {}
@@ -1,8 +1,13 @@
 package edu.brown.cs.student.util;
 
 import com.squareup.moshi.JsonAdapter;
+import com.squareup.moshi.JsonWriter;
 import com.squareup.moshi.Moshi;
 import com.squareup.moshi.Types;
+import edu.brown.cs.student.util.AdapterRecords.ApiResponseRecord;
+import edu.brown.cs.student.util.AdapterRecords.CodeRecord;
+import edu.brown.cs.student.util.AdapterRecords.RuntimeRecord;
+import edu.brown.cs.student.util.AdapterRecords.TestRecord;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -12,8 +17,12 @@ import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import okio.BufferedSink;
+import okio.Okio;
+import spark.Response;
 
 /** Utility class for common operations. */
 public class JsonUtil {
@@ -21,6 +30,46 @@ public class JsonUtil {
   private static final Moshi moshi = new Moshi.Builder().build();
   private static final JsonAdapter<Object> jsonAdapter = moshi.adapter(Object.class);
 
+  private static final Type STRING_OBJECT_MAP =
+      Types.newParameterizedType(Map.class, String.class, Object.class);
+  private static final Type STRING_STRING_MAP =
+      Types.newParameterizedType(Map.class, String.class, String.class);
+  private static final Type STRING_MAP_MAP =
+      Types.newParameterizedType(Map.class, String.class, STRING_STRING_MAP);
+
+  // adapters are created once per type and shared; moshi adapters are thread safe
+  private static final Map<Type, JsonAdapter<?>> adapters = new ConcurrentHashMap<>();
+  // List<T> types by element type, so toObjectList does not build a new type per call
+  private static final Map<Type, Type> listTypes = new ConcurrentHashMap<>();
+
+  /**
+   * Returns the shared adapter of a type, creating it on first use.
+   *
+   * @param type the type to adapt
+   * @return the adapter of type
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> JsonAdapter<T> adapter(Type type) {
+    return (JsonAdapter<T>) adapters.computeIfAbsent(type, moshi::adapter);
+  }
+
+  /**
+   * Creates the adapters used on every request up front, so the first requests after startup do not
+   * pay for reflective adapter creation.
+   */
+  public static void prewarm() {
+    for (Type type :
+        new Type[] {
+          CodeRecord.class, TestRecord.class, ApiResponseRecord.class, RuntimeRecord.class
+        }) {
+      adapter(type);
+      adapter(listTypes.computeIfAbsent(type, t -> Types.newParameterizedType(List.class, t)));
+    }
+    adapter(STRING_OBJECT_MAP);
+    adapter(STRING_STRING_MAP);
+    adapter(STRING_MAP_MAP);
+  }
+
   /**
    * Converts an object to a JSON string using Moshi.
    *
@@ -36,6 +85,25 @@ public class JsonUtil {
     }
   }
 
+  /**
+   * Serializes an object straight into the response body instead of building the whole json string
+   * first, so memory use does not grow with the size of the response. Headers must be set before
+   * calling this, since the response is committed once the first bytes are written.
+   *
+   * @param response the response to write to
+   * @param obj the object to serialize
+   * @return the empty string, for the route to return to spark in place of a body
+   */
+  public static String writeMoshiJson(Response response, Object obj) throws IOException {
+    response.type("application/json");
+    // the servlet stream is closed by the container, so only flush it
+    BufferedSink sink = Okio.buffer(Okio.sink(response.raw().getOutputStream()));
+    JsonWriter writer = JsonWriter.of(sink);
+    jsonAdapter.toJson(writer, obj);
+    writer.flush();
+    return "";
+  }
+
   /**
    *<p>Converts json to a List of element instances.
    * This method serves as a convenient method of filtering large queries for only required data.
@@ -47,8 +115,8 @@ public class JsonUtil {
    * @return a list containg instances of 'of' or null on exception or empty json
    */
   public static <T> List<T> toObjectList(String json, Type of) {
-    Type type = Types.newParameterizedType(List.class, of);
-    JsonAdapter<List<T>> jsonAdapter = moshi.adapter(type);
+    Type type = listTypes.computeIfAbsent(of, t -> Types.newParameterizedType(List.class, t));
+    JsonAdapter<List<T>> jsonAdapter = adapter(type);
     try {
       return jsonAdapter.fromJson(json);
     } catch (Exception e) {
@@ -77,8 +145,7 @@ public class JsonUtil {
    * @return
    */
   public static Map<String, Object> toMap(String json) {
-    Type type = Types.newParameterizedType(Map.class, String.class, Object.class);
-    JsonAdapter<Map<String, Object>> adapter = moshi.adapter(type);
+    JsonAdapter<Map<String, Object>> adapter = adapter(STRING_OBJECT_MAP);
     try {
       return adapter.fromJson(json);
     } catch (Exception e) {
@@ -94,8 +161,7 @@ public class JsonUtil {
    * @return
    */
   public static Map<String, String> toStrMap(String json) {
-    Type type = Types.newParameterizedType(Map.class, String.class, String.class);
-    JsonAdapter<Map<String, String>> adapter = moshi.adapter(type);
+    JsonAdapter<Map<String, String>> adapter = adapter(STRING_STRING_MAP);
     try {
       return adapter.fromJson(json);
     } catch (Exception e) {
@@ -114,12 +180,7 @@ public class JsonUtil {
    */
   public static Map<String, Map<String, String>> readJsonToMap(String filepath) {
     // todo: handle error with missing file later...
-    Type type =
-        Types.newParameterizedType(
-            Map.class,
-            String.class,
-            Types.newParameterizedType(Map.class, String.class, String.class));
-    JsonAdapter<Map<String, Map<String, String>>> adapter = moshi.adapter(type);
+    JsonAdapter<Map<String, Map<String, String>>> adapter = adapter(STRING_MAP_MAP);
     try (InputStream is = new FileInputStream(filepath)) {
       String fileStream = new String(is.readAllBytes());
       return adapter.fromJson(fileStream);
@@ -140,7 +201,7 @@ public class JsonUtil {
    * @throws Exception
    */
   public static <T> T toObject(String json, Type type) throws IOException {
-    JsonAdapter<T> adapter = moshi.adapter(type);
+    JsonAdapter<T> adapter = adapter(type);
     return adapter.fromJson(json);
   }
 
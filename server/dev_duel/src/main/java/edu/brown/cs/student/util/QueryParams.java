@@ -0,0 +1,51 @@
+package edu.brown.cs.student.util;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+import spark.Request;
+
+/** Parses query parameters shared by several endpoints. */
+public class QueryParams {
+
+  /**
+   * Reads the fields parameter, a comma separated list of the document fields to return, e.g.
+   * fields=userID,displayName. Nested fields are dotted, e.g. players.user_2.
+   *
+   * @param request the request
+   * @return the requested fields, or null to return every field
+   */
+  public static Set<String> fields(Request request) {
+    String fieldsParam = request.queryParams("fields");
+    if (fieldsParam == null) {
+      return null;
+    }
+    Set<String> fields = new LinkedHashSet<>();
+    for (String field : fieldsParam.split(",")) {
+      if (!field.isBlank()) {
+        fields.add(field.trim());
+      }
+    }
+    return fields.isEmpty() ? null : fields;
+  }
+
+  /**
+   * Reads the limit parameter, the page size of a paginated list.
+   *
+   * @param request the request
+   * @param defaultLimit page size when no limit is given
+   * @param maxLimit largest page size allowed
+   * @return the page size
+   * @throws IllegalArgumentException if the limit is not a number between 1 and maxLimit
+   */
+  public static int limit(Request request, int defaultLimit, int maxLimit) {
+    String limitParam = request.queryParams("limit");
+    if (limitParam == null) {
+      return defaultLimit;
+    }
+    int limit = Integer.parseInt(limitParam);
+    if (limit < 1 || limit > maxLimit) {
+      throw new IllegalArgumentException("limit must be between 1 and " + maxLimit + ".");
+    }
+    return limit;
+  }
+}
@@ -1,5 +1,6 @@
 package edu.brown.cs.student.util;
 
+import com.squareup.moshi.Types;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
@@ -7,6 +8,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class TypeResolverUtil {
   // Mapping of simple names to fully qualified class names
@@ -39,6 +41,10 @@ public class TypeResolverUtil {
         }
       };
 
+  // resolved types by whitespace-free type string. The same Type instance is handed out for a
+  // string every time, so moshi creates its adapter once per type for the life of the process.
+  private static final Map<String, Type> RESOLVED_TYPES = new ConcurrentHashMap<>();
+
   /**
    * Resolves a type from its string representation using simple or full class names.
    *
@@ -49,14 +55,21 @@ public class TypeResolverUtil {
   public static Type resolveType(String typeString) throws ClassNotFoundException {
     // Remove all whitespaces
     typeString = typeString.replaceAll("\\s+", "");
+    Type resolved = RESOLVED_TYPES.get(typeString);
+    if (resolved != null) {
+      return resolved;
+    }
 
     // Base case: simple type without generics
     if (!typeString.contains("<")) {
-      return resolveClassName(typeString);
+      resolved = resolveClassName(typeString);
+    } else {
+      // Parse the base type and generic types
+      resolved = parseParameterizedType(typeString);
     }
-
-    // Parse the base type and generic types
-    return parseParameterizedType(typeString);
+    // not computeIfAbsent: resolving generic arguments recurses into this map
+    Type previous = RESOLVED_TYPES.putIfAbsent(typeString, resolved);
+    return previous != null ? previous : resolved;
   }
 
   /** Resolve a class name, supporting both simple and fully qualified names */
@@ -85,37 +98,8 @@ public class TypeResolverUtil {
     // Parse generic type arguments
     final List<Type> typeArguments = parseGenericTypeArguments(genericContent);
 
-    // Create a ParameterizedType
-    return new ParameterizedType() {
-      @Override
-      public Type[] getActualTypeArguments() {
-        return typeArguments.toArray(new Type[0]);
-      }
-
-      @Override
-      public Type getRawType() {
-        return baseClass;
-      }
-
-      @Override
-      public Type getOwnerType() {
-        return null;
-      }
-
-      @Override
-      public String toString() {
-        StringBuilder sb = new StringBuilder(baseClass.getSimpleName());
-        sb.append("<");
-        for (int i = 0; i < typeArguments.size(); i++) {
-          sb.append(typeArguments.get(i).toString());
-          if (i < typeArguments.size() - 1) {
-            sb.append(", ");
-          }
-        }
-        sb.append(">");
-        return sb.toString();
-      }
-    };
+    // moshi's ParameterizedType implements equals and hashCode, so its adapter cache can match it
+    return Types.newParameterizedType(baseClass, typeArguments.toArray(new Type[0]));
   }
 
   /** Recursively parse generic type arguments */
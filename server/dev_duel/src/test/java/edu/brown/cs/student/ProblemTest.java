@@ -6,8 +6,11 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.Logger;
+import edu.brown.cs.student.code_engine.CachedProblem;
+import edu.brown.cs.student.code_engine.HarnessTemplateCache;
 import edu.brown.cs.student.code_engine.ICodeEngineApi;
 import edu.brown.cs.student.code_engine.PistonCodeEngineApi;
+import edu.brown.cs.student.code_engine.SubmissionQueue;
 import edu.brown.cs.student.endpoints.CodeHandler;
 import edu.brown.cs.student.endpoints.GetProblemsHandler;
 import edu.brown.cs.student.endpoints.RuntimesHandler;
@@ -33,7 +36,7 @@ import spark.Spark;
 
 public class ProblemTest {
 
-  private CacheStorage<Map<String, String>> problemCache;
+  private CacheStorage<CachedProblem> problemCache;
 
   @BeforeAll
   public static void setup_before_everything() {
@@ -50,8 +53,11 @@ public class ProblemTest {
     ICodeEngineApi pistonApIDatasource = new PistonCodeEngineApi(this.problemCache);
 
     Spark.get("runtimes", new RuntimesHandler(pistonApIDatasource));
-    Spark.post("runcode", new CodeHandler(pistonApIDatasource));
-    Spark.get("getproblem", new GetProblemsHandler(firestoreUtils, this.problemCache));
+    Spark.post("runcode", new CodeHandler(new SubmissionQueue(pistonApIDatasource, 2, 8)));
+    Spark.get(
+        "getproblem",
+        new GetProblemsHandler(
+            firestoreUtils, this.problemCache, HarnessTemplateCache.load("data/codemap.json")));
 
     Spark.init();
     Spark.awaitInitialization(); // don't continue until the server is listening
@@ -11,8 +11,9 @@ import edu.brown.cs.student.endpoints.RoomList;
 import edu.brown.cs.student.endpoints.RoomSet;
 import edu.brown.cs.student.storage.FirestoreUtil;
 import edu.brown.cs.student.storage.IStorage;
+import edu.brown.cs.student.storage.InMemoryStorage;
 import edu.brown.cs.student.storage.MockRoom;
-import edu.brown.cs.student.storage.MockStorage;
+import edu.brown.cs.student.storage.RoomRegistry;
 import java.io.IOException;
 import java.lang.reflect.Type;
 import java.net.HttpURLConnection;
@@ -50,12 +51,12 @@ public class RoomsTest {
     firestoreUtils = new FirestoreUtil(); // something here could be the problem as to why
     // firestore doesnt work
     // when I uncomment these and try everything with mock it fails
-    this.mockStorage = new MockStorage();
+    this.mockStorage = new InMemoryStorage();
     this.mockRoom = new MockRoom();
 
-    Spark.get("RoomSet", new RoomSet(this.mockStorage));
+    Spark.get("RoomSet", new RoomSet(this.mockStorage, new RoomRegistry()));
     Spark.get("RoomInfo", new RoomInfo(this.mockStorage));
-    Spark.get("RoomDel", new RoomDel(this.mockStorage));
+    Spark.get("RoomDel", new RoomDel(this.mockStorage, new RoomRegistry()));
     Spark.get("RoomList", new RoomList(this.mockStorage));
 
     Moshi moshi = new Moshi.Builder().build();
@@ -251,6 +252,28 @@ public class RoomsTest {
     clientConnection.disconnect();
   }
 
+  @Test
+  public void testRoomInfoFields() throws IOException, ExecutionException, InterruptedException {
+    this.initialRoom();
+    this.addSecondPlayerToRoom();
+
+    HttpURLConnection clientConnection =
+        tryRequest("RoomInfo?roomID=333&fields=roomName,players.22.userScore");
+    assertEquals(200, clientConnection.getResponseCode());
+
+    Moshi moshi = new Moshi.Builder().build();
+    Map<String, Map<String, Object>> response =
+        moshi.adapter(Map.class).fromJson(new Buffer().readFrom(clientConnection.getInputStream()));
+
+    assertEquals("success", response.get("response_type"));
+    // only the selected fields, including just the one nested field of one player
+    assertEquals(
+        Map.of("roomName", "testName", "players", Map.of("22", Map.of("userScore", "0/7"))),
+        response.get("data"));
+
+    clientConnection.disconnect();
+  }
+
   @Test
   public void RoomInfoNoID() throws IOException {
     HttpURLConnection clientConnection = tryRequest("RoomInfo");
@@ -294,6 +317,43 @@ public class RoomsTest {
     clientConnection.disconnect();
   }
 
+  @Test
+  public void RoomListPaged() throws IOException, ExecutionException, InterruptedException {
+    this.initialRoom();
+    HttpURLConnection clientConnection2 =
+        tryRequest(
+            "RoomSet?roomID=443&roomName=testName2&problemID=10&difficulty=medium"
+                + "&timeCreated=1:00&duration=1200");
+    assertEquals(200, clientConnection2.getResponseCode());
+    clientConnection2.disconnect();
+
+    Moshi moshi = new Moshi.Builder().build();
+    HttpURLConnection clientConnection = tryRequest("RoomList?limit=1");
+    Map<String, Object> firstPage =
+        moshi.adapter(Map.class).fromJson(new Buffer().readFrom(clientConnection.getInputStream()));
+    clientConnection.disconnect();
+    List<Map<String, Object>> firstRooms = (List<Map<String, Object>>) firstPage.get("data");
+    assertEquals("success", firstPage.get("response_type"));
+    assertEquals(1, firstRooms.size());
+    assertEquals("333", firstRooms.get(0).get("roomID"));
+    Assert.assertNotNull(firstPage.get("nextCursor"));
+
+    clientConnection = tryRequest("RoomList?limit=1&cursor=" + firstPage.get("nextCursor"));
+    Map<String, Object> secondPage =
+        moshi.adapter(Map.class).fromJson(new Buffer().readFrom(clientConnection.getInputStream()));
+    clientConnection.disconnect();
+    List<Map<String, Object>> secondRooms = (List<Map<String, Object>>) secondPage.get("data");
+    assertEquals(1, secondRooms.size());
+    assertEquals("443", secondRooms.get(0).get("roomID"));
+    Assert.assertNull(secondPage.get("nextCursor"));
+
+    clientConnection = tryRequest("RoomList?cursor=notACursor");
+    Map<String, Object> badCursor =
+        moshi.adapter(Map.class).fromJson(new Buffer().readFrom(clientConnection.getInputStream()));
+    clientConnection.disconnect();
+    assertEquals("failure", badCursor.get("response_type"));
+  }
+
   @Test
   public void RoomListNoRooms() throws IOException {
     HttpURLConnection clientConnection = tryRequest("RoomList");
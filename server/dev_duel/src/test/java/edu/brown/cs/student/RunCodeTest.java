@@ -8,9 +8,12 @@ import static org.junit.jupiter.api.Assertions.fail;
 
 import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.Logger;
+import edu.brown.cs.student.code_engine.CachedProblem;
 import edu.brown.cs.student.code_engine.ICodeEngineApi;
 import edu.brown.cs.student.code_engine.PistonCodeEngineApi;
+import edu.brown.cs.student.code_engine.SubmissionQueue;
 import edu.brown.cs.student.endpoints.CodeHandler;
+import edu.brown.cs.student.endpoints.RunResultHandler;
 import edu.brown.cs.student.endpoints.RuntimesHandler;
 import edu.brown.cs.student.storage.CacheStorage;
 import edu.brown.cs.student.storage.FirestoreUtil;
@@ -37,7 +40,7 @@ import spark.Spark;
 
 public class RunCodeTest {
 
-  private CacheStorage<Map<String, String>> problemCache;
+  private CacheStorage<CachedProblem> problemCache;
 
   @BeforeAll
   public static void setup_before_everything() {
@@ -54,7 +57,9 @@ public class RunCodeTest {
     ICodeEngineApi pistonApIDatasource = new PistonCodeEngineApi(this.problemCache);
 
     Spark.get("runtimes", new RuntimesHandler(pistonApIDatasource));
-    Spark.post("runcode", new CodeHandler(pistonApIDatasource));
+    SubmissionQueue submissionQueue = new SubmissionQueue(pistonApIDatasource, 2, 8);
+    Spark.post("runcode", new CodeHandler(submissionQueue));
+    Spark.get("runresult", new RunResultHandler(submissionQueue));
 
     Spark.init();
     Spark.awaitInitialization(); // don't continue until the server is listening
@@ -65,6 +70,7 @@ public class RunCodeTest {
   public void teardown() {
     // Gracefully stop Spark listening on both endpoints after each test
     Spark.unmap("runcode");
+    Spark.unmap("runresult");
     Spark.unmap("runtimes");
 
     Spark.awaitStop(); // don't proceed until the server is stopped
@@ -79,9 +85,7 @@ public class RunCodeTest {
             new TestRecord("\"Henry\"", "Hello Henry", "\"Henry\""),
             new TestRecord("\"Mary\"", "Hello Mary", "\"Mary\""),
             new TestRecord("\"Harry\"", "Hello Harry", "\"Harry\""));
-    String testString = JsonUtil.toMoshiJson(testRecs);
-    Map<String, String> toCache =
-        Map.of("test", testString, "expectExact", "true", "returnType", "String");
+    CachedProblem toCache = CachedProblem.of("greet", testRecs, true, "String");
     this.problemCache.put("Problems/greet", toCache);
 
     // mock typed code for each language;
@@ -146,7 +150,7 @@ public class RunCodeTest {
           }
         }
 
-        String responseBody = readHttpResponse(conn);
+        String responseBody = awaitRunResult(readHttpResponse(conn));
         System.out.println("response: " + responseBody);
 
         CodeRunResponseRecord responseRecord =
@@ -180,9 +184,7 @@ public class RunCodeTest {
                 "[1,2,2,3,4, 5],[2, 3, 5]",
                 "[3, 2,5]",
                 "List.of(1,2,2,3,4, 5), List.of( 2, 3, 5)"));
-    String testString = JsonUtil.toMoshiJson(testRecs);
-    Map<String, String> toCache =
-        Map.of("test", testString, "expectExact", "false", "returnType", "List<Integer>");
+    CachedProblem toCache = CachedProblem.of("intersectLists", testRecs, false, "List<Integer>");
     this.problemCache.put("Problems/intersectLists", toCache);
 
     // mock typed code for each language;
@@ -286,7 +288,7 @@ public class RunCodeTest {
           }
         }
 
-        String responseBody = readHttpResponse(conn);
+        String responseBody = awaitRunResult(readHttpResponse(conn));
         System.out.println("response " + responseBody);
         CodeRunResponseRecord responseRecord =
             JsonUtil.toObject(responseBody, CodeRunResponseRecord.class);
@@ -312,9 +314,7 @@ public class RunCodeTest {
             new TestRecord("[1,2,2,3,4, 5]", "{1, 2, 3, 4, 5}", "List.of(1,2,2,3,4, 5)"),
             new TestRecord("[1,2,2,3,4, 5]", "{5, 3, 2, 1, 4}", "List.of(1,2,2,3,4, 5)"),
             new TestRecord("[1,2,2,3,4, 5]", "{3, 2, 5, 2, 1}", "List.of(1,2,2,3,4, 5)"));
-    String testString = JsonUtil.toMoshiJson(testRecs);
-    Map<String, String> toCache =
-        Map.of("test", testString, "expectExact", "false", "returnType", "Set<Integer>");
+    CachedProblem toCache = CachedProblem.of("listToSet", testRecs, false, "Set<Integer>");
     this.problemCache.put("Problems/listToSet", toCache);
     // mock typed code for each language;
     List<Map<String, String>> programList = new ArrayList<>();
@@ -353,7 +353,7 @@ public class RunCodeTest {
         // write to connection
         sendRequest(conn, payload);
         // read request
-        String responseBody = readHttpResponse(conn);
+        String responseBody = awaitRunResult(readHttpResponse(conn));
         System.out.println("response " + responseBody);
         CodeRunResponseRecord responseRecord =
             JsonUtil.toObject(responseBody, CodeRunResponseRecord.class);
@@ -375,9 +375,7 @@ public class RunCodeTest {
   public void testRuncodeReturnsMap() {
     List<TestRecord> testRecs =
         List.of(new TestRecord("", JsonUtil.toMoshiJson(Map.of("a", "1", "b", "2", "c", "3")), ""));
-    String testString = JsonUtil.toMoshiJson(testRecs);
-    Map<String, String> toCache =
-        Map.of("test", testString, "expectExact", "false", "returnType", "Map<String, String>");
+    CachedProblem toCache = CachedProblem.of("createMap", testRecs, false, "Map<String, String>");
     this.problemCache.put("Problems/createMap", toCache);
     // mock typed code for each language;
     List<Map<String, String>> programList = new ArrayList<>();
@@ -446,7 +444,7 @@ public class RunCodeTest {
         // write to connection
         sendRequest(conn, payload);
         // read request
-        String responseBody = readHttpResponse(conn);
+        String responseBody = awaitRunResult(readHttpResponse(conn));
         System.out.println("response " + responseBody);
         CodeRunResponseRecord responseRecord =
             JsonUtil.toObject(responseBody, CodeRunResponseRecord.class);
@@ -472,9 +470,7 @@ public class RunCodeTest {
             new TestRecord("-40", "-40.0", "-40.0"),
             new TestRecord("37", "98.6", "37.0"),
             new TestRecord("23.98765", "75.17777", "23.98765"));
-    String testString = JsonUtil.toMoshiJson(testRecs);
-    Map<String, String> toCache =
-        Map.of("test", testString, "expectExact", "true", "returnType", "Double");
+    CachedProblem toCache = CachedProblem.of("toFahrenheit", testRecs, true, "Double");
     this.problemCache.put("Problems/toFahrenheit", toCache);
     // mock typed code for each language;
     List<Map<String, String>> programList = new ArrayList<>();
@@ -528,7 +524,7 @@ public class RunCodeTest {
         // write to connection
         sendRequest(conn, payload);
         // read request
-        String responseBody = readHttpResponse(conn);
+        String responseBody = awaitRunResult(readHttpResponse(conn));
         System.out.println("response " + responseBody);
         CodeRunResponseRecord responseRecord =
             JsonUtil.toObject(responseBody, CodeRunResponseRecord.class);
@@ -546,13 +542,55 @@ public class RunCodeTest {
     }
   }
 
+  // java submissions need not import anything the harness uses
+  @Test
+  public void testRunJavaWithoutImports() {
+    List<TestRecord> testRecs =
+        List.of(
+            new TestRecord("\"duel\"", "leud", "\"duel\""),
+            new TestRecord("\"racecar\"", "racecar", "\"racecar\""),
+            new TestRecord("\"\"", "", "\"\""));
+    CachedProblem toCache = CachedProblem.of("reverseWord", testRecs, true, "String");
+    this.problemCache.put("Problems/reverseWord", toCache);
+
+    String code =
+        """
+            public class Solution {
+              public String reverseWord(String word) {
+                return new StringBuilder(word).reverse().toString();
+              }
+            }
+            """;
+    CodeRecord codeRecord = new CodeRecord("reverseWord", "java", "15.0.2", code);
+    String payload = JsonUtil.toMoshiJson(codeRecord);
+    try {
+      // open connection
+      HttpURLConnection conn = tryRequest("runcode", "POST");
+      // write to connection
+      sendRequest(conn, payload);
+      // read request
+      String responseBody = awaitRunResult(readHttpResponse(conn));
+      System.out.println("response " + responseBody);
+      CodeRunResponseRecord responseRecord =
+          JsonUtil.toObject(responseBody, CodeRunResponseRecord.class);
+      assertEquals("success", responseRecord.response_type());
+      assertEquals("3/3", responseRecord.score());
+      assertTrue(responseRecord.output().isEmpty());
+      // check the tests
+      for (Map<String, String> test : responseRecord.tests()) {
+        assertEquals(test.get("expected"), test.get("actual"));
+      }
+
+    } catch (Exception e) {
+      throw new RuntimeException(e);
+    }
+  }
+
   // Tests for common python syntax error
   @Test
   public void testRunCodeIndentationError() {
     List<TestRecord> testRecs = List.of(new TestRecord("", "", ""));
-    String testString = JsonUtil.toMoshiJson(testRecs);
-    Map<String, String> toCache =
-        Map.of("test", testString, "expectExact", "true", "returnType", "String");
+    CachedProblem toCache = CachedProblem.of("errorCode", testRecs, true, "String");
     this.problemCache.put("Problems/errorCode", toCache);
 
     // create problem
@@ -585,7 +623,7 @@ public class RunCodeTest {
         // write to connection
         sendRequest(conn, payload);
         // read request
-        String responseBody = readHttpResponse(conn);
+        String responseBody = awaitRunResult(readHttpResponse(conn));
         System.out.println("response " + responseBody);
         CodeRunResponseRecord responseRecord =
             JsonUtil.toObject(responseBody, CodeRunResponseRecord.class);
@@ -607,9 +645,7 @@ public class RunCodeTest {
   @Test
   public void testRunCodeSyntaxError() {
     List<TestRecord> testRecs = List.of(new TestRecord("", "", ""));
-    String testString = JsonUtil.toMoshiJson(testRecs);
-    Map<String, String> toCache =
-        Map.of("test", testString, "expectExact", "true", "returnType", "String");
+    CachedProblem toCache = CachedProblem.of("errorCode", testRecs, true, "String");
     this.problemCache.put("Problems/errorCode", toCache);
 
     // create problem
@@ -648,7 +684,7 @@ public class RunCodeTest {
         // write to connection
         sendRequest(conn, payload);
         // read request
-        String responseBody = readHttpResponse(conn);
+        String responseBody = awaitRunResult(readHttpResponse(conn));
         System.out.println("response " + responseBody);
         CodeRunResponseRecord responseRecord =
             JsonUtil.toObject(responseBody, CodeRunResponseRecord.class);
@@ -668,9 +704,7 @@ public class RunCodeTest {
   @Test
   public void testRuncodePaylodMissingAField() {
     List<TestRecord> testRecs = List.of(new TestRecord("", "", ""));
-    String testString = JsonUtil.toMoshiJson(testRecs);
-    Map<String, String> toCache =
-        Map.of("test", testString, "expectExact", "true", "returnType", "String");
+    CachedProblem toCache = CachedProblem.of("errorCode", testRecs, true, "String");
     this.problemCache.put("Problems/errorCode", toCache);
     List<CodeRecord> payloadList =
         List.of(
@@ -685,7 +719,7 @@ public class RunCodeTest {
         // write to connection
         sendRequest(conn, payload);
         // read request
-        String responseBody = readHttpResponse(conn);
+        String responseBody = awaitRunResult(readHttpResponse(conn));
         System.out.println("response " + responseBody);
         Map<String, Object> responseMap = JsonUtil.toMap(responseBody);
         assertNotNull(responseMap);
@@ -699,6 +733,25 @@ public class RunCodeTest {
     }
   }
 
+  /**
+   * Polls the runresult endpoint until the job referenced by a queued runcode response finishes.
+   *
+   * @param queuedResponse body returned by the runcode endpoint
+   * @return the body of the finished runresult response
+   * @throws Exception on any exception
+   */
+  private static String awaitRunResult(String queuedResponse) throws Exception {
+    Map<String, Object> queuedMap = JsonUtil.toMap(queuedResponse);
+    assertNotNull(queuedMap);
+    assertEquals("queued", queuedMap.get("response_type"));
+    String responseBody;
+    do {
+      HttpURLConnection conn = tryRequest("runresult?jobID=" + queuedMap.get("jobID"), "GET");
+      responseBody = readHttpResponse(conn);
+    } while ("pending".equals(JsonUtil.toMap(responseBody).get("response_type")));
+    return responseBody;
+  }
+
   /**
    * Send payload to the output stream of the given connection
    *
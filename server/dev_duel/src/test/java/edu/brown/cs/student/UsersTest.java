@@ -1,6 +1,9 @@
 package edu.brown.cs.student;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 
 import com.squareup.moshi.JsonAdapter;
 import com.squareup.moshi.Moshi;
@@ -10,15 +13,18 @@ import edu.brown.cs.student.endpoints.UserInfo;
 import edu.brown.cs.student.endpoints.UserLeaderboard;
 import edu.brown.cs.student.endpoints.UserList;
 import edu.brown.cs.student.endpoints.UserSet;
+import edu.brown.cs.student.endpoints.UserSubmissions;
 import edu.brown.cs.student.endpoints.UserUpdateHist;
 import edu.brown.cs.student.storage.FirestoreUtil;
 import edu.brown.cs.student.storage.IStorage;
-import edu.brown.cs.student.storage.MockStorage;
+import edu.brown.cs.student.storage.InMemoryStorage;
+import edu.brown.cs.student.storage.LeaderboardIndex;
 import edu.brown.cs.student.storage.MockUser;
 import java.io.IOException;
 import java.lang.reflect.Type;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
@@ -49,14 +55,16 @@ public class UsersTest {
   public void setup() throws IOException {
     IStorage firestoreUtils;
     firestoreUtils = new FirestoreUtil();
-    this.mockStorage = new MockStorage();
+    this.mockStorage = new InMemoryStorage();
     this.mockUser = new MockUser();
 
-    Spark.get("UserSet", new UserSet(this.mockStorage));
-    Spark.get("UserUpdateHist", new UserUpdateHist(this.mockStorage));
+    LeaderboardIndex leaderboard = new LeaderboardIndex();
+    Spark.get("UserSet", new UserSet(this.mockStorage, leaderboard));
+    Spark.get("UserUpdateHist", new UserUpdateHist(this.mockStorage, leaderboard));
     Spark.get("UserInfo", new UserInfo(this.mockStorage));
     Spark.get("UserList", new UserList(this.mockStorage));
-    Spark.get("UserLeaderboard", new UserLeaderboard(this.mockStorage));
+    Spark.get("UserLeaderboard", new UserLeaderboard(leaderboard));
+    Spark.get("UserSubmissions", new UserSubmissions(this.mockStorage));
 
     Moshi moshi = new Moshi.Builder().build();
     adapter = moshi.adapter(mapStringObject);
@@ -74,6 +82,7 @@ public class UsersTest {
     Spark.unmap("UserSet");
     Spark.unmap("UserUpdateHist");
     Spark.unmap("UserInfo");
+    Spark.unmap("UserSubmissions");
     Spark.awaitStop(); // don't proceed until the server is stopped
   }
 
@@ -85,6 +94,19 @@ public class UsersTest {
     return clientConnection;
   }
 
+  // helper reading a user's submissions back in the shape of the old code history field
+  private Map<String, Object> submissionHistory(String userID)
+      throws ExecutionException, InterruptedException {
+    Map<String, Object> history = new HashMap<>();
+    for (Map<String, Object> submission :
+        this.mockStorage
+            .getDocumentsWhere("Submissions", "userID", userID, 100, null)
+            .documents()) {
+      history.put("problem" + submission.get("problemID"), submission);
+    }
+    return Map.of("code", history);
+  }
+
   // helper to avoid repeating the initial user setup
   public void setUpUser() throws IOException, ExecutionException, InterruptedException {
     HttpURLConnection clientConnection =
@@ -242,6 +264,7 @@ public class UsersTest {
 
     Map<String, Object> doc = this.mockStorage.getDocument("Users", "user_2");
     this.mockUser.updateFields(doc);
+    this.mockUser.updateFields(this.submissionHistory("user_2"));
 
     assertEquals(this.mockUser.displayName, "testTwo");
     assertEquals(this.mockUser.userID, "user_2");
@@ -252,6 +275,8 @@ public class UsersTest {
         this.mockUser.code.get("problem3").code, "System.out.println(\"Goodbye cruel World!\");");
     assertEquals(this.mockUser.code.get("problem3").date, "2024-12-03T12:00:01Z");
     assertEquals(this.mockUser.code.get("problem3").score, "2/4");
+    // the code history is kept out of the user document
+    assertFalse(doc.containsKey("code"));
 
     clientConnection.disconnect();
   }
@@ -301,6 +326,7 @@ public class UsersTest {
     assertEquals("success", response.get("response_type"));
     Map<String, Object> doc = this.mockStorage.getDocument("Users", "user_2");
     this.mockUser.updateFields(doc);
+    this.mockUser.updateFields(this.submissionHistory("user_2"));
 
     assertEquals(this.mockUser.displayName, "testTwo");
     assertEquals(this.mockUser.userID, "user_2");
@@ -334,6 +360,7 @@ public class UsersTest {
     assertEquals("success", response.get("response_type"));
     Map<String, Object> doc = this.mockStorage.getDocument("Users", "user_2");
     this.mockUser.updateFields(doc);
+    this.mockUser.updateFields(this.submissionHistory("user_2"));
 
     assertEquals(this.mockUser.displayName, "testTwo");
     assertEquals(this.mockUser.userID, "user_2");
@@ -356,6 +383,15 @@ public class UsersTest {
     this.updateHistAgainBetterScore();
   }
 
+  @Test
+  public void UserUpdateHistRetriedWin()
+      throws IOException, ExecutionException, InterruptedException {
+    this.setUpUser();
+    this.addHistUser_2();
+    // the same request again, as a client retrying it would send, still counts one win
+    this.addHistUser_2();
+  }
+
   @Test
   public void UserUpdateHistBetterScoreLose()
       throws IOException, ExecutionException, InterruptedException {
@@ -374,6 +410,7 @@ public class UsersTest {
     assertEquals("success", response.get("response_type"));
     Map<String, Object> doc = this.mockStorage.getDocument("Users", "user_2");
     this.mockUser.updateFields(doc);
+    this.mockUser.updateFields(this.submissionHistory("user_2"));
 
     assertEquals(this.mockUser.displayName, "testTwo");
     assertEquals(this.mockUser.userID, "user_2");
@@ -406,6 +443,7 @@ public class UsersTest {
     assertEquals("success", response.get("response_type"));
     Map<String, Object> doc = this.mockStorage.getDocument("Users", "user_2");
     this.mockUser.updateFields(doc);
+    this.mockUser.updateFields(this.submissionHistory("user_2"));
 
     assertEquals(this.mockUser.displayName, "testTwo");
     assertEquals(this.mockUser.userID, "user_2");
@@ -438,6 +476,7 @@ public class UsersTest {
     assertEquals("success", response.get("response_type"));
     Map<String, Object> doc = this.mockStorage.getDocument("Users", "user_2");
     this.mockUser.updateFields(doc);
+    this.mockUser.updateFields(this.submissionHistory("user_2"));
 
     assertEquals(this.mockUser.displayName, "testTwo");
     assertEquals(this.mockUser.userID, "user_2");
@@ -466,6 +505,7 @@ public class UsersTest {
     assertEquals("success", response.get("response_type"));
     Map<String, Object> doc = this.mockStorage.getDocument("Users", "user_2");
     this.mockUser.updateFields(doc);
+    this.mockUser.updateFields(this.submissionHistory("user_2"));
 
     assertEquals(this.mockUser.displayName, response.get("data").get("displayName"));
     assertEquals(this.mockUser.userID, response.get("data").get("userID"));
@@ -480,6 +520,22 @@ public class UsersTest {
     clientConnection.disconnect();
   }
 
+  @Test
+  public void UserInfoFields() throws IOException, ExecutionException, InterruptedException {
+    this.setUpUser();
+    HttpURLConnection clientConnection =
+        tryRequest("UserInfo?userID=user_2&fields=userID,%20displayName");
+    assertEquals(200, clientConnection.getResponseCode());
+
+    Map<String, Object> response =
+        this.adapter.fromJson(new Buffer().readFrom(clientConnection.getInputStream()));
+
+    assertEquals("success", response.get("response_type"));
+    assertEquals(Map.of("userID", "user_2", "displayName", "testTwo"), response.get("data"));
+
+    clientConnection.disconnect();
+  }
+
   @Test
   public void UserUpdateHistTwiceThenInfo()
       throws IOException, ExecutionException, InterruptedException {
@@ -496,6 +552,7 @@ public class UsersTest {
     assertEquals("success", response.get("response_type"));
     Map<String, Object> doc = this.mockStorage.getDocument("Users", "user_2");
     this.mockUser.updateFields(doc);
+    this.mockUser.updateFields(this.submissionHistory("user_2"));
 
     assertEquals(this.mockUser.displayName, response.get("data").get("displayName"));
     assertEquals(this.mockUser.userID, response.get("data").get("userID"));
@@ -599,4 +656,46 @@ public class UsersTest {
 
     clientConnection2.disconnect();
   }
+
+  @Test
+  public void UserSubmissionsPaged() throws IOException, ExecutionException, InterruptedException {
+    this.setUpUser();
+    this.addHistUser_2();
+    HttpURLConnection histConnection =
+        tryRequest(
+            "UserUpdateHist?userID=user_2&problemID=4&date=2024-12-03T11:00:01Z&"
+                + "score=2/8&code=System.out.println(%22Hello%20cruel%20World!%22);&win=false");
+    assertEquals(200, histConnection.getResponseCode());
+    histConnection.disconnect();
+
+    HttpURLConnection clientConnection = tryRequest("UserSubmissions?userID=user_2&limit=1");
+    assertEquals(200, clientConnection.getResponseCode());
+    Map<String, Object> response =
+        this.adapter.fromJson(new Buffer().readFrom(clientConnection.getInputStream()));
+    assertEquals("success", response.get("response_type"));
+    List<Map<String, Object>> page = (List<Map<String, Object>>) response.get("data");
+    assertEquals(1, page.size());
+    assertEquals("3", page.get(0).get("problemID"));
+    clientConnection.disconnect();
+
+    assertNotNull(response.get("nextCursor"));
+
+    HttpURLConnection nextConnection =
+        tryRequest("UserSubmissions?userID=user_2&limit=1&cursor=" + response.get("nextCursor"));
+    Map<String, Object> next =
+        this.adapter.fromJson(new Buffer().readFrom(nextConnection.getInputStream()));
+    List<Map<String, Object>> nextPage = (List<Map<String, Object>>) next.get("data");
+    assertEquals(1, nextPage.size());
+    assertEquals("4", nextPage.get(0).get("problemID"));
+    assertEquals("2/8", nextPage.get(0).get("score"));
+    // the last page has no next one
+    assertNull(next.get("nextCursor"));
+    nextConnection.disconnect();
+
+    HttpURLConnection missingConnection = tryRequest("UserSubmissions?limit=1");
+    Map<String, Object> missing =
+        this.adapter.fromJson(new Buffer().readFrom(missingConnection.getInputStream()));
+    assertEquals("failure", missing.get("response_type"));
+    missingConnection.disconnect();
+  }
 }
@@ -0,0 +1,118 @@
+package edu.brown.cs.student.benchmarks;
+
+import edu.brown.cs.student.code_engine.CachedProblem;
+import edu.brown.cs.student.code_engine.HarnessTemplate;
+import edu.brown.cs.student.code_engine.HarnessTemplateCache;
+import edu.brown.cs.student.util.AdapterRecords.TestRecord;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the ways a submission's program has been assembled: rendering the harness and filling in
+ * its placeholders with String.replace for every submission, filling in a harness rendered once,
+ * and assembling a precompiled harness template. Run from server/dev_duel, so data/codemap.json is
+ * found, with
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=edu.brown.cs.student.benchmarks.HarnessTemplateBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HarnessTemplateBenchmark {
+  private static final String NONCE = "9f3c2a71d04b86e5";
+  private static final String CODE =
+      "public class Solution {\n"
+          + "  public Integer sumOfList(List<Integer> nums) {\n"
+          + "    int sum = 0;\n"
+          + "    for (int n : nums) sum += n;\n"
+          + "    return sum;\n"
+          + "  }\n"
+          + "}";
+
+  @Param({"java", "python"})
+  public String language;
+
+  @Param({"4", "40"})
+  public int testCount;
+
+  private HarnessTemplateCache templates;
+  private CachedProblem problem;
+  private String renderedHarness;
+  private HarnessTemplate template;
+
+  @Setup
+  public void setup() {
+    List<TestRecord> tests = new ArrayList<>();
+    for (int i = 0; i < this.testCount; i++) {
+      tests.add(
+          new TestRecord("[" + i + ", " + (i + 1) + "]", String.valueOf(2 * i + 1), "List.of(1)"));
+    }
+    this.templates = HarnessTemplateCache.load("data/codemap.json");
+    this.problem = CachedProblem.of("sumOfList", tests, true, "Integer");
+    this.renderedHarness =
+        this.templates.render(tests, 0, this.testCount, "sumOfList", this.language);
+    this.template = this.templates.get(this.problem, this.language, 0, this.testCount);
+  }
+
+  @Benchmark
+  public String renderPerSubmission() {
+    String harness =
+        this.templates.render(
+            this.problem.tests(), 0, this.testCount, this.problem.name(), this.language);
+    return this.fillIn(harness);
+  }
+
+  @Benchmark
+  public String replaceInRenderedHarness() {
+    return this.fillIn(this.renderedHarness);
+  }
+
+  @Benchmark
+  public String assembleTemplate() {
+    String userCode =
+        this.language.equals("java") ? CODE.substring(0, CODE.length() - 1) : CODE + "\n";
+    return this.template.assemble(userCode, NONCE, "Solution", 2000, false);
+  }
+
+  /** Fills in a rendered harness the way runCodeWithTest did before templates. */
+  private String fillIn(String harness) {
+    harness =
+        harness
+            .replace("<NONCE>", NONCE)
+            .replace("<TIMEOUT_MILLIS>", "2000")
+            .replace("<FAIL_FAST>", "0");
+    String codeToRun = CODE + "\n";
+    if (this.language.equals("java")) {
+      harness = harness.replace("<CLASS>", "Solution");
+      String stripped = codeToRun.strip();
+      return stripped.substring(0, stripped.length() - 1) + harness + "}";
+    }
+    return codeToRun + "\n" + harness;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(HarnessTemplateBenchmark.class.getSimpleName()).build())
+        .run();
+  }
+}
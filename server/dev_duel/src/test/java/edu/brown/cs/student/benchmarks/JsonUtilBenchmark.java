@@ -0,0 +1,85 @@
+package edu.brown.cs.student.benchmarks;
+
+import com.squareup.moshi.JsonAdapter;
+import com.squareup.moshi.Moshi;
+import com.squareup.moshi.Types;
+import edu.brown.cs.student.util.AdapterRecords.TestRecord;
+import edu.brown.cs.student.util.JsonUtil;
+import edu.brown.cs.student.util.TypeResolverUtil;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares parsing the judging payloads with an adapter looked up per call, as JsonUtil used to,
+ * against the shared adapters JsonUtil hands out now. Run with
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=edu.brown.cs.student.benchmarks.JsonUtilBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonUtilBenchmark {
+  private static final String TESTS_JSON =
+      "[{\"params\":\"[1,2,3], [2,3]\",\"expected\":\"[2,3]\",\"jparams\":\"List.of(1,2,3),"
+          + " List.of(2,3)\"},{\"params\":\"[4], [4]\",\"expected\":\"[4]\",\"jparams\":"
+          + "\"List.of(4), List.of(4)\"}]";
+  private static final String RESULT_JSON = "[1, 2, 3, 4, 5]";
+
+  private Moshi moshi;
+  private Type listOfIntegers;
+
+  @Setup
+  public void setup() throws ClassNotFoundException {
+    this.moshi = new Moshi.Builder().build();
+    this.listOfIntegers = TypeResolverUtil.resolveType("List<Integer>");
+  }
+
+  @Benchmark
+  public List<TestRecord> testRecordsPerCallAdapter() throws IOException {
+    Type type = Types.newParameterizedType(List.class, TestRecord.class);
+    JsonAdapter<List<TestRecord>> adapter = this.moshi.adapter(type);
+    return adapter.fromJson(TESTS_JSON);
+  }
+
+  @Benchmark
+  public List<TestRecord> testRecordsSharedAdapter() {
+    return JsonUtil.toObjectList(TESTS_JSON, TestRecord.class);
+  }
+
+  @Benchmark
+  public Object resultPerCallAdapter() throws IOException {
+    Type type = Types.newParameterizedType(List.class, Integer.class);
+    JsonAdapter<Object> adapter = this.moshi.adapter(type);
+    return adapter.fromJson(RESULT_JSON);
+  }
+
+  @Benchmark
+  public Object resultSharedAdapter() throws IOException {
+    return JsonUtil.toObject(RESULT_JSON, this.listOfIntegers);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(JsonUtilBenchmark.class.getSimpleName()).build()).run();
+  }
+}
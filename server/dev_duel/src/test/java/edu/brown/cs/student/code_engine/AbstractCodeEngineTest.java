@@ -0,0 +1,175 @@
+package edu.brown.cs.student.code_engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import edu.brown.cs.student.storage.CacheStorage;
+import edu.brown.cs.student.util.AdapterRecords.ApiResponseRecord;
+import edu.brown.cs.student.util.AdapterRecords.ApiResponseRunFieldRecord;
+import edu.brown.cs.student.util.AdapterRecords.CodeRecord;
+import edu.brown.cs.student.util.AdapterRecords.TestRecord;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+public class AbstractCodeEngineTest {
+  private static final int TEST_COUNT = 6;
+
+  /**
+   * Reports scripted values for the tests of each shard instead of running anything, stopping a
+   * shard the way the local engine does once the parser asks to. The shards are ordered by two
+   * latches: a wrong value is only reported after test 0, and the test given as waitBefore only
+   * after a wrong value.
+   */
+  private static class ScriptedEngine extends AbstractCodeEngine {
+    private final String[] values;
+    private final int waitBefore;
+    private final CountDownLatch firstReported = new CountDownLatch(1);
+    private final CountDownLatch wrongReported = new CountDownLatch(1);
+
+    ScriptedEngine(CacheStorage<CachedProblem> cache, String[] values, int waitBefore) {
+      // every test is over the shard budget, so the 6 tests are split into the 2 allowed shards
+      super(cache, 2_000, 1, 2, 2);
+      this.values = values;
+      this.waitBefore = waitBefore;
+    }
+
+    @Override
+    protected ApiResponseRecord runCodeWithTest(
+        CodeRecord problem,
+        CachedProblem cachedProblem,
+        int from,
+        int to,
+        String nonce,
+        ResultFrameParser frames) {
+      for (int i = from; i < to; i++) {
+        String value = this.values[i];
+        boolean wrong = !value.equals(cachedProblem.tests().get(i).expected());
+        if (wrong && i > 0) {
+          await(this.firstReported);
+        }
+        if (i == this.waitBefore) {
+          await(this.wrongReported);
+        }
+        boolean keepGoing =
+            frames.accept(
+                ResultFrameParser.VERSION
+                    + " "
+                    + nonce
+                    + " "
+                    + i
+                    + " ok 10 "
+                    + value.length()
+                    + ":"
+                    + value
+                    + "\n");
+        if (i == 0) {
+          this.firstReported.countDown();
+        }
+        if (wrong) {
+          this.wrongReported.countDown();
+        }
+        if (!keepGoing) {
+          break;
+        }
+      }
+      return new ApiResponseRecord(null, new ApiResponseRunFieldRecord("", ""));
+    }
+
+    private static void await(CountDownLatch latch) {
+      try {
+        latch.await(5, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    @Override
+    public Map<String, Object> getRuntimes() {
+      return Map.of();
+    }
+
+    @Override
+    protected ApiResponseRecord execute(CodeRecord code) {
+      throw new UnsupportedOperationException("tests are scripted");
+    }
+  }
+
+  private static CacheStorage<CachedProblem> problemCache() {
+    List<TestRecord> tests = new ArrayList<>();
+    for (int i = 0; i < TEST_COUNT; i++) {
+      tests.add(new TestRecord(String.valueOf(i), String.valueOf(i), String.valueOf(i)));
+    }
+    CachedProblem problem = CachedProblem.of("echo", tests, false, "Integer");
+    // a measured test far over the budget makes the run split into shards
+    problem.runtimeEstimate("python").recordTest(1_000_000);
+    CacheStorage<CachedProblem> cache = new CacheStorage<>(10, 10);
+    cache.put("Problems/echo", problem);
+    return cache;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static List<String> statuses(Map<String, Object> response) {
+    List<String> statuses = new ArrayList<>();
+    for (Map<String, Object> test : (List<Map<String, Object>>) response.get("tests")) {
+      statuses.add((String) test.get("status"));
+    }
+    return statuses;
+  }
+
+  private static Map<String, Object> run(ScriptedEngine engine, boolean failFast) {
+    return engine.runCode(new CodeRecord("echo", "python", "3.10.0", "code", failFast));
+  }
+
+  @Test
+  public void testFirstShardFailsFast() {
+    // test 0 is wrong; the second shard reports test 3 only after that, then stops
+    ScriptedEngine engine =
+        new ScriptedEngine(problemCache(), new String[] {"9", "1", "2", "3", "4", "5"}, 3);
+    Map<String, Object> response = run(engine, true);
+
+    assertEquals("success", response.get("response_type"));
+    assertEquals("1/6", response.get("score"));
+    assertEquals(
+        List.of("failed", "skipped", "skipped", "passed", "skipped", "skipped"),
+        statuses(response));
+  }
+
+  @Test
+  public void testLaterShardStopsFirstShard() {
+    // test 3 of the second shard is wrong while the first shard is still running, so the first
+    // shard stops after test 1 and never tries test 2
+    ScriptedEngine engine =
+        new ScriptedEngine(problemCache(), new String[] {"0", "1", "2", "9", "4", "5"}, 1);
+    Map<String, Object> response = run(engine, true);
+
+    assertEquals("2/6", response.get("score"));
+    assertEquals(
+        List.of("passed", "passed", "skipped", "failed", "skipped", "skipped"), statuses(response));
+  }
+
+  @Test
+  public void testShardEndingEarlyWithoutFailFastKeepsMissingTests() {
+    // every test passes, but the first shard ends after test 0 without having been asked to stop
+    ScriptedEngine engine =
+        new ScriptedEngine(problemCache(), new String[] {"0", "1", "2", "3", "4", "5"}, -1) {
+          @Override
+          protected ApiResponseRecord runCodeWithTest(
+              CodeRecord problem,
+              CachedProblem cachedProblem,
+              int from,
+              int to,
+              String nonce,
+              ResultFrameParser frames) {
+            return super.runCodeWithTest(
+                problem, cachedProblem, from, from == 0 ? 1 : to, nonce, frames);
+          }
+        };
+    Map<String, Object> response = run(engine, false);
+
+    assertEquals(
+        List.of("passed", "missing", "missing", "passed", "passed", "passed"), statuses(response));
+  }
+}
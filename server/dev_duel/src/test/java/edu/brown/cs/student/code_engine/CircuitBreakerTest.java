@@ -0,0 +1,105 @@
+package edu.brown.cs.student.code_engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.brown.cs.student.code_engine.CircuitBreaker.State;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/** Runs the circuit breaker on a fake clock, so the cool-down passes exactly when a test says. */
+public class CircuitBreakerTest {
+  private final AtomicLong millis = new AtomicLong();
+  private CircuitBreaker breaker;
+
+  @BeforeEach
+  public void setup() {
+    this.millis.set(0);
+    this.breaker = new CircuitBreaker(3, 1000, this.millis::get);
+  }
+
+  // makes a call that fails
+  private void fail() {
+    assertTrue(this.breaker.tryAcquire());
+    this.breaker.recordFailure();
+  }
+
+  // fails calls until the breaker opens
+  private void open() {
+    for (int i = 0; i < 3; i++) {
+      this.fail();
+    }
+    assertEquals(State.OPEN, this.breaker.state());
+  }
+
+  @Test
+  public void testOpensAfterFailuresInARow() {
+    this.fail();
+    this.fail();
+    assertEquals(State.CLOSED, this.breaker.state());
+    this.fail();
+    assertEquals(State.OPEN, this.breaker.state());
+
+    assertFalse(this.breaker.tryAcquire());
+    assertEquals(1L, this.breaker.stats().get("timesOpened"));
+    assertEquals(1L, this.breaker.stats().get("rejected"));
+    assertEquals(3, this.breaker.stats().get("consecutiveFailures"));
+  }
+
+  @Test
+  public void testSuccessResetsFailures() {
+    this.fail();
+    this.fail();
+    assertTrue(this.breaker.tryAcquire());
+    this.breaker.recordSuccess();
+    this.fail();
+    this.fail();
+    assertEquals(State.CLOSED, this.breaker.state());
+  }
+
+  @Test
+  public void testSingleTrialAfterCoolDown() {
+    this.open();
+    this.millis.set(999);
+    assertFalse(this.breaker.tryAcquire());
+
+    this.millis.set(1000);
+    assertTrue(this.breaker.tryAcquire());
+    assertEquals(State.HALF_OPEN, this.breaker.state());
+    // only one trial call at a time
+    assertFalse(this.breaker.tryAcquire());
+
+    this.breaker.recordSuccess();
+    assertEquals(State.CLOSED, this.breaker.state());
+    assertTrue(this.breaker.tryAcquire());
+  }
+
+  @Test
+  public void testFailedTrialReopens() {
+    this.open();
+    this.millis.set(1000);
+    assertTrue(this.breaker.tryAcquire());
+    this.breaker.recordFailure();
+    assertEquals(State.OPEN, this.breaker.state());
+    assertEquals(2L, this.breaker.stats().get("timesOpened"));
+
+    // the cool-down starts again from the failed trial
+    this.millis.set(1999);
+    assertFalse(this.breaker.tryAcquire());
+    this.millis.set(2000);
+    assertTrue(this.breaker.tryAcquire());
+  }
+
+  @Test
+  public void testReleasedTrialCanBeRetried() {
+    this.open();
+    this.millis.set(1000);
+    assertTrue(this.breaker.tryAcquire());
+    // the trial call was never made, so another caller may make it
+    this.breaker.release();
+    assertTrue(this.breaker.tryAcquire());
+    assertEquals(State.HALF_OPEN, this.breaker.state());
+  }
+}
@@ -0,0 +1,123 @@
+package edu.brown.cs.student.code_engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import edu.brown.cs.student.util.AdapterRecords.TestRecord;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+public class HarnessTemplateTest {
+  // a codemap.json cut down to what the templates are built from
+  private static final Map<String, Map<String, String>> CODEMAP =
+      Map.of(
+          "testCall",
+          Map.of("python", "t(<INDEX>, lambda: <CALL>)\n", "java", "t(<INDEX>, () -> <CALL>);\n"),
+          "helpers",
+          Map.of("python", "# helpers", "java", "// helpers"),
+          "mainMethod",
+          Map.of(
+              "python",
+              "run(\"<NONCE>\", <FAIL_FAST>):\n<TESTCODE>",
+              "java",
+              "main(\"<NONCE>\", <TIMEOUT_MILLIS>) {\n<TESTCODE>}"));
+
+  private static CachedProblem problem() {
+    return CachedProblem.of(
+        "add",
+        List.of(new TestRecord("1, 2", "3", "1, 2"), new TestRecord("3, 4", "7", "3, 4")),
+        false,
+        "Integer");
+  }
+
+  @Test
+  public void testAssembleFillsEverySlot() {
+    HarnessTemplate template =
+        HarnessTemplate.compile("// ", "\n<NONCE> <CLASS> <TIMEOUT_MILLIS> <FAIL_FAST> <NONCE>");
+
+    assertEquals(
+        "// code\nn1 Solution 250 1 n1", template.assemble("code", "n1", "Solution", 250, true));
+    // the template keeps no state from a run
+    assertEquals("// other\nn2 Main 10 0 n2", template.assemble("other", "n2", "Main", 10, false));
+  }
+
+  @Test
+  public void testOtherBracketsAreLiteral() {
+    // generics, comparisons and a user code placeholder in the harness are copied as they are
+    String suffix = " List<Integer> x; a < b; <USER_CODE> <NONCE";
+    HarnessTemplate template = HarnessTemplate.compile("", suffix);
+
+    assertEquals("code" + suffix, template.assemble("code", "n1", "Solution", 1, false));
+  }
+
+  @Test
+  public void testPythonHarnessFollowsCode() {
+    HarnessTemplateCache templates = new HarnessTemplateCache(CODEMAP);
+    String program =
+        templates
+            .get(problem(), "python", 0, 2)
+            .assemble("def add(a, b): return a + b", "n1", "Solution", 100, true);
+
+    assertEquals(
+        "def add(a, b): return a + b\n"
+            + "# helpers\n"
+            + "run(\"n1\", 1):\n"
+            + "t(0, lambda: add(1, 2))\n"
+            + "t(1, lambda: add(3, 4))\n\n",
+        program);
+  }
+
+  @Test
+  public void testJavaHarnessClosesClass() {
+    HarnessTemplateCache templates = new HarnessTemplateCache(CODEMAP);
+    // the engine cuts the last brace of the class, which the harness puts back
+    String program =
+        templates.get(problem(), "java", 0, 2).assemble("class Sol {", "n1", "Sol", 250, false);
+
+    assertEquals(
+        "class Sol {// helpers\n"
+            + "main(\"n1\", 250) {\n"
+            + "t(0, () -> new Sol().add(1, 2));\n"
+            + "t(1, () -> new Sol().add(3, 4));\n"
+            + "}\n}",
+        program);
+  }
+
+  @Test
+  public void testShardKeepsTestIndices() {
+    HarnessTemplateCache templates = new HarnessTemplateCache(CODEMAP);
+    String program = templates.get(problem(), "python", 1, 2).assemble("", "n1", "", 100, false);
+
+    assertEquals("\n# helpers\nrun(\"n1\", 0):\nt(1, lambda: add(3, 4))\n\n", program);
+    assertFalse(program.contains("t(0,"));
+  }
+
+  @Test
+  public void testTemplatesBuiltOncePerProblem() {
+    HarnessTemplateCache templates = new HarnessTemplateCache(CODEMAP);
+    CachedProblem problem = problem();
+
+    HarnessTemplate whole = templates.get(problem, "python", 0, 2);
+    assertSame(whole, templates.get(problem, "python", 0, 2));
+    // a shard is a template of its own
+    assertNotSame(whole, templates.get(problem, "python", 0, 1));
+  }
+
+  @Test
+  public void testWarmBuildsEveryLanguage() {
+    CachedProblem problem = new HarnessTemplateCache(CODEMAP).warm(problem());
+
+    for (String language : List.of("python", "java")) {
+      assertNotNull(
+          problem.harness(
+              language,
+              key -> {
+                throw new AssertionError("not warmed: " + key);
+              }));
+    }
+  }
+}
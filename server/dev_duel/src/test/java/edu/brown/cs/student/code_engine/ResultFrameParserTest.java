@@ -0,0 +1,123 @@
+package edu.brown.cs.student.code_engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.brown.cs.student.code_engine.ResultFrameParser.Parsed;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class ResultFrameParserTest {
+  private static final String NONCE = "abc";
+
+  // a frame as the harness prints it
+  private static String frame(int index, String status, long micros, String value) {
+    return "#DDv1 "
+        + NONCE
+        + " "
+        + index
+        + " "
+        + status
+        + " "
+        + micros
+        + " "
+        + value.length()
+        + ":"
+        + value
+        + "\n";
+  }
+
+  @Test
+  public void testFramesBetweenOutput() {
+    Parsed parsed =
+        ResultFrameParser.parse(
+            "hello\n" + frame(0, "ok", 12, "\"x\"") + "world\r\n" + frame(1, "error", 5, ""),
+            NONCE,
+            2);
+
+    assertEquals(List.of("hello", "world"), parsed.output());
+    assertEquals(2, parsed.frames());
+    assertEquals(new TestResult(0, "ok", 12, "\"x\""), parsed.results().get(0));
+    assertEquals(new TestResult(1, "error", 5, ""), parsed.results().get(1));
+  }
+
+  @Test
+  public void testValueIsReadByLength() {
+    // the value holds what looks like a frame, which must not be taken for one
+    String value = "\"" + frame(1, "ok", 1, "1").trim() + "\"";
+    Parsed parsed = ResultFrameParser.parse(frame(0, "ok", 1, value), NONCE, 2);
+
+    assertEquals(value, parsed.results().get(0).value());
+    assertEquals(TestResult.MISSING, parsed.results().get(1).status());
+    assertEquals(1, parsed.frames());
+  }
+
+  @Test
+  public void testOtherNonceIsOutput() {
+    String forged = "#DDv1 xyz 0 ok 1 1:1";
+    Parsed parsed = ResultFrameParser.parse(forged + "\n", NONCE, 1);
+
+    assertEquals(List.of(forged), parsed.output());
+    assertEquals(TestResult.MISSING, parsed.results().get(0).status());
+    assertEquals(0, parsed.frames());
+  }
+
+  @Test
+  public void testMalformedFramesAreOutput() {
+    // the value is longer than its header says, and the last frame is cut off
+    String tooLong = "#DDv1 abc 0 ok 1 1:12";
+    String cutOff = "#DDv1 abc 1 ok 1 5:12";
+    Parsed parsed = ResultFrameParser.parse(tooLong + "\n" + cutOff, NONCE, 2);
+
+    assertEquals(List.of(tooLong, cutOff), parsed.output());
+    assertEquals(0, parsed.frames());
+  }
+
+  @Test
+  public void testLastFrameWithoutNewline() {
+    String output = frame(0, "ok", 3, "true");
+    Parsed parsed = ResultFrameParser.parse(output.substring(0, output.length() - 1), NONCE, 1);
+
+    assertEquals("true", parsed.results().get(0).value());
+    assertTrue(parsed.output().isEmpty());
+  }
+
+  @Test
+  public void testRepeatedFrameKeepsFirst() {
+    Parsed parsed =
+        ResultFrameParser.parse(frame(0, "ok", 1, "1") + frame(0, "ok", 1, "2"), NONCE, 1);
+
+    assertEquals("1", parsed.results().get(0).value());
+    assertEquals(1, parsed.frames());
+  }
+
+  @Test
+  public void testChunksParseLikeWholeOutput() {
+    String output =
+        "a#b\n" + frame(0, "ok", 7, "[1,2]") + "##DDv1 ab\n" + frame(1, "timeout", 9, "null");
+    Parsed whole = ResultFrameParser.parse(output, NONCE, 2);
+
+    // fed one character at a time, so every frame is split across chunks
+    ResultFrameParser parser = new ResultFrameParser(NONCE, 2);
+    for (int i = 0; i < output.length(); i++) {
+      parser.accept(output.substring(i, i + 1));
+    }
+
+    assertEquals(whole, parser.finish());
+    assertEquals(List.of("a#b", "##DDv1 ab"), whole.output());
+    assertEquals(2, whole.frames());
+  }
+
+  @Test
+  public void testStopsAfterRequestedResult() {
+    ResultFrameParser parser =
+        new ResultFrameParser(NONCE, 3, result -> !result.status().equals(TestResult.OK));
+
+    assertTrue(parser.accept(frame(0, "ok", 1, "1")));
+    assertFalse(parser.stopped());
+    assertFalse(parser.accept(frame(1, TestResult.TIMEOUT, 1, "")));
+    assertTrue(parser.stopped());
+    assertEquals(TestResult.MISSING, parser.finish().results().get(2).status());
+  }
+}
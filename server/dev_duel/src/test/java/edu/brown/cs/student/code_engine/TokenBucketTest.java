@@ -0,0 +1,153 @@
+package edu.brown.cs.student.code_engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/** Runs the token bucket on a fake clock, handing out tokens only when a test says so. */
+public class TokenBucketTest {
+
+  /** Keeps scheduled hand-outs instead of running them, so tests run them at a time they pick. */
+  private static class ManualScheduler extends ScheduledThreadPoolExecutor {
+    final List<Runnable> tasks = new ArrayList<>();
+    final List<Long> delays = new ArrayList<>();
+
+    ManualScheduler() {
+      super(1);
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+      this.tasks.add(command);
+      this.delays.add(unit.toNanos(delay));
+      return null;
+    }
+
+    /** Runs the hand-out scheduled last. */
+    void runNext() {
+      this.tasks.remove(this.tasks.size() - 1).run();
+    }
+  }
+
+  private final AtomicLong nanos = new AtomicLong();
+  private ManualScheduler scheduler;
+
+  @BeforeEach
+  public void setup() {
+    this.nanos.set(0);
+    this.scheduler = new ManualScheduler();
+  }
+
+  private TokenBucket bucket(double permitsPerSecond, int burst, int maxQueue) {
+    return new TokenBucket(permitsPerSecond, burst, maxQueue, this.nanos::get, this.scheduler);
+  }
+
+  private void advanceMillis(long millis) {
+    this.nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+  }
+
+  @Test
+  public void testBurstThenQueueThenReject() {
+    TokenBucket bucket = this.bucket(10, 2, 1);
+
+    // the burst is handed out at once
+    assertTrue(bucket.acquire().isDone());
+    assertTrue(bucket.acquire().isDone());
+    assertTrue(this.scheduler.tasks.isEmpty());
+
+    // the next caller waits for the token refilling in 100ms
+    CompletableFuture<Void> waiting = bucket.acquire();
+    assertFalse(waiting.isDone());
+    assertEquals(1, this.scheduler.tasks.size());
+    assertEquals(100, Math.round(this.scheduler.delays.get(0) / 1e6));
+
+    // the queue holds one caller, so the one after it is turned away
+    CompletableFuture<Void> rejected = bucket.acquire();
+    ExecutionException e = assertThrows(ExecutionException.class, rejected::get);
+    assertTrue(e.getCause() instanceof RejectedExecutionException);
+
+    this.advanceMillis(101);
+    this.scheduler.runNext();
+    assertTrue(waiting.isDone());
+
+    assertEquals(3L, bucket.stats().get("granted"));
+    assertEquals(1L, bucket.stats().get("rejected"));
+    assertEquals(0, bucket.stats().get("queueDepth"));
+    assertEquals(101.0, bucket.stats().get("maxWaitMillis"));
+  }
+
+  @Test
+  public void testEarlyHandOutWaitsAgain() {
+    TokenBucket bucket = this.bucket(10, 1, 4);
+    bucket.acquire();
+    CompletableFuture<Void> waiting = bucket.acquire();
+
+    // a hand-out that runs before the token refilled schedules the next one for the rest
+    this.advanceMillis(90);
+    this.scheduler.runNext();
+    assertFalse(waiting.isDone());
+    assertEquals(1, this.scheduler.tasks.size());
+    assertEquals(10, Math.round(this.scheduler.delays.get(1) / 1e6));
+
+    this.advanceMillis(11);
+    this.scheduler.runNext();
+    assertTrue(waiting.isDone());
+  }
+
+  @Test
+  public void testWaitersServedInOrder() {
+    TokenBucket bucket = this.bucket(10, 1, 4);
+    bucket.acquire();
+    CompletableFuture<Void> first = bucket.acquire();
+    CompletableFuture<Void> second = bucket.acquire();
+
+    this.advanceMillis(101);
+    this.scheduler.runNext();
+    assertTrue(first.isDone());
+    assertFalse(second.isDone());
+
+    this.advanceMillis(100);
+    this.scheduler.runNext();
+    assertTrue(second.isDone());
+    assertTrue(this.scheduler.tasks.isEmpty());
+  }
+
+  @Test
+  public void testPauseHoldsBackTokens() {
+    TokenBucket bucket = this.bucket(10, 1, 4);
+    bucket.pause(500);
+    assertEquals(500L, bucket.stats().get("pausedMillis"));
+
+    // the bucket is emptied, and nothing refills while it is paused
+    CompletableFuture<Void> waiting = bucket.acquire();
+    assertFalse(waiting.isDone());
+    assertTrue(this.scheduler.delays.get(0) >= TimeUnit.MILLISECONDS.toNanos(500));
+
+    this.advanceMillis(450);
+    this.scheduler.runNext();
+    assertFalse(waiting.isDone());
+
+    // refilling only starts when the pause ends
+    this.advanceMillis(100);
+    this.scheduler.runNext();
+    assertFalse(waiting.isDone());
+
+    this.advanceMillis(60);
+    this.scheduler.runNext();
+    assertTrue(waiting.isDone());
+    assertEquals(0L, bucket.stats().get("pausedMillis"));
+  }
+}
@@ -0,0 +1,155 @@
+package edu.brown.cs.student.storage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class InMemoryStorageTest {
+  private InMemoryStorage storage;
+
+  @BeforeEach
+  public void setup() {
+    this.storage = new InMemoryStorage();
+  }
+
+  private static Map<String, Object> user(String userID, Object wins) {
+    Map<String, Object> user = new HashMap<>();
+    user.put("userID", userID);
+    if (wins != null) {
+      user.put("wins", wins);
+    }
+    return user;
+  }
+
+  // userIDs of the users sorted by wins, most first
+  private List<Object> byWins() throws Exception {
+    List<Object> ids = new ArrayList<>();
+    for (Map<String, Object> user : this.storage.sortCollection("Users", "wins")) {
+      ids.add(user.get("userID"));
+    }
+    return ids;
+  }
+
+  @Test
+  public void testTransactRetriesOnConcurrentWrite() throws Exception {
+    this.storage.addDocument("Users", "u1", user("u1", 10L));
+    AtomicInteger calls = new AtomicInteger();
+
+    Map<String, Object> updated =
+        this.storage.transact(
+            "Users",
+            "u1",
+            current -> {
+              if (calls.incrementAndGet() == 1) {
+                // another write lands between the read and the commit
+                this.storage.updateDocument("Users", "u1", Map.of("wins", 20L));
+              }
+              return Map.of("wins", new Increment(1));
+            });
+
+    // the changes were made again on the newer document, so that write is not lost
+    assertEquals(2, calls.get());
+    assertEquals(21L, updated.get("wins"));
+    assertEquals(21L, this.storage.getDocument("Users", "u1").get("wins"));
+    assertEquals(3, this.storage.getVersion("Users", "u1"));
+  }
+
+  @Test
+  public void testTransactWithoutChanges() throws Exception {
+    this.storage.addDocument("Users", "u1", user("u1", 1L));
+
+    assertEquals(user("u1", 1L), this.storage.transact("Users", "u1", current -> null));
+    assertEquals(1, this.storage.getVersion("Users", "u1"));
+    // a missing document is created by the first change
+    assertNull(this.storage.transact("Users", "u2", current -> Map.of()));
+    assertEquals(
+        Map.of("wins", 1L),
+        this.storage.transact("Users", "u2", current -> Map.of("wins", new Increment(1))));
+    assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            this.storage.transact(
+                "Users",
+                "u3",
+                current -> {
+                  throw new IllegalArgumentException("no such user");
+                }));
+  }
+
+  @Test
+  public void testIntegerCountersStayIntegers() throws Exception {
+    this.storage.addDocument("Users", "u1", user("u1", 2L));
+    this.storage.addDocument("Users", "u2", user("u2", 2.5));
+    this.storage.transact("Users", "u1", current -> Map.of("wins", new Increment(1)));
+    this.storage.transact("Users", "u2", current -> Map.of("wins", new Increment(1)));
+
+    assertEquals(3L, this.storage.getDocument("Users", "u1").get("wins"));
+    assertEquals(3.5, this.storage.getDocument("Users", "u2").get("wins"));
+  }
+
+  @Test
+  public void testIndexFollowsWrites() throws Exception {
+    this.storage.addDocument("Users", "u1", user("u1", 3L));
+    this.storage.addDocument("Users", "u2", user("u2", 5L));
+    this.storage.addDocument("Users", "u3", user("u3", 1L));
+    assertEquals(List.of("u2", "u1", "u3"), this.byWins());
+
+    this.storage.updateDocument("Users", "u3", Map.of("wins", 7L));
+    assertEquals(List.of("u3", "u2", "u1"), this.byWins());
+
+    this.storage.transact("Users", "u1", current -> Map.of("wins", new Increment(5)));
+    assertEquals(List.of("u1", "u3", "u2"), this.byWins());
+
+    this.storage.deleteDocument("Users", "u2");
+    assertEquals(List.of("u1", "u3"), this.byWins());
+
+    // a document that loses the field leaves the index
+    this.storage.addDocument("Users", "u3", user("u3", null));
+    assertEquals(List.of("u1"), this.byWins());
+    assertEquals(2, this.storage.getDocumentCount("Users"));
+  }
+
+  @Test
+  public void testWherePagesFollowWrites() throws Exception {
+    // indexed and scanned lookups give the same pages
+    for (InMemoryStorage storage : List.of(new InMemoryStorage(), new InMemoryStorage(Set.of()))) {
+      for (String docID : List.of("a_3", "a_1", "b_1", "a_2")) {
+        storage.addDocument("Submissions", docID, Map.of("userID", docID.substring(0, 1)));
+      }
+
+      Page first = storage.getDocumentsWhere("Submissions", "userID", "a", 2, null);
+      assertEquals(2, first.documents().size());
+      assertNotNull(first.nextCursor());
+      Page second = storage.getDocumentsWhere("Submissions", "userID", "a", 2, first.nextCursor());
+      assertEquals(1, second.documents().size());
+      assertNull(second.nextCursor());
+
+      storage.updateDocument("Submissions", "a_2", Map.of("userID", "b"));
+      assertEquals(
+          2, storage.getDocumentsWhere("Submissions", "userID", "b", 10, null).documents().size());
+      assertEquals(
+          2, storage.getDocumentsWhere("Submissions", "userID", "a", 10, null).documents().size());
+    }
+  }
+
+  @Test
+  public void testReadsReturnCopies() throws Exception {
+    this.storage.addDocument("Rooms", "r1", Map.of("players", Map.of("a", 1)));
+
+    Map<String, Object> read = this.storage.getDocument("Rooms", "r1");
+    ((Map<String, Object>) read.get("players")).put("b", 2);
+    read.put("score", 3);
+
+    assertEquals(Map.of("players", Map.of("a", 1)), this.storage.getDocument("Rooms", "r1"));
+  }
+}
@@ -0,0 +1,83 @@
+package edu.brown.cs.student.storage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import org.junit.jupiter.api.Test;
+
+public class OrderStatisticTreeTest {
+
+  // checks every position and count of the tree against a sorted set holding the same elements
+  private static void assertMatches(TreeSet<Integer> expected, OrderStatisticTree<Integer> tree) {
+    assertEquals(expected.size(), tree.size());
+    List<Integer> sorted = new ArrayList<>(expected);
+    for (int i = 0; i < sorted.size(); i++) {
+      assertEquals(sorted.get(i), tree.get(i));
+      assertEquals(i, tree.countBefore(sorted.get(i), false));
+      assertEquals(i + 1, tree.countBefore(sorted.get(i), true));
+    }
+  }
+
+  @Test
+  public void testAddRemoveContains() {
+    OrderStatisticTree<Integer> tree = new OrderStatisticTree<>(Comparator.naturalOrder());
+    assertTrue(tree.add(5));
+    assertFalse(tree.add(5));
+    assertTrue(tree.add(3));
+    assertTrue(tree.contains(3));
+    assertFalse(tree.contains(4));
+
+    assertTrue(tree.remove(5));
+    assertFalse(tree.remove(5));
+    assertEquals(1, tree.size());
+    assertEquals(3, tree.get(0));
+  }
+
+  @Test
+  public void testCountBeforeMissingValue() {
+    OrderStatisticTree<Integer> tree = new OrderStatisticTree<>(Comparator.naturalOrder());
+    for (int value : new int[] {10, 20, 30}) {
+      tree.add(value);
+    }
+    // values that are not in the tree still count the elements before them
+    assertEquals(0, tree.countBefore(5, true));
+    assertEquals(2, tree.countBefore(25, false));
+    assertEquals(2, tree.countBefore(25, true));
+    assertEquals(3, tree.countBefore(35, false));
+  }
+
+  @Test
+  public void testGetOutOfBounds() {
+    OrderStatisticTree<Integer> tree = new OrderStatisticTree<>(Comparator.naturalOrder());
+    assertThrows(IndexOutOfBoundsException.class, () -> tree.get(0));
+    tree.add(1);
+    assertThrows(IndexOutOfBoundsException.class, () -> tree.get(-1));
+    assertThrows(IndexOutOfBoundsException.class, () -> tree.get(1));
+  }
+
+  @Test
+  public void testRandomOperationsMatchSortedSet() {
+    Random random = new Random(42);
+    TreeSet<Integer> expected = new TreeSet<>(Comparator.reverseOrder());
+    OrderStatisticTree<Integer> tree = new OrderStatisticTree<>(Comparator.reverseOrder());
+    for (int i = 0; i < 2000; i++) {
+      int value = random.nextInt(300);
+      if (random.nextBoolean()) {
+        assertEquals(expected.add(value), tree.add(value));
+      } else {
+        assertEquals(expected.remove(value), tree.remove(value));
+      }
+      if (i % 100 == 0) {
+        assertMatches(expected, tree);
+      }
+    }
+    assertMatches(expected, tree);
+  }
+}
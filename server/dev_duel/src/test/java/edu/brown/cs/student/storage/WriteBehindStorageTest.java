@@ -0,0 +1,133 @@
+package edu.brown.cs.student.storage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/** Flushes by hand: the timer and the size trigger are set so they never fire during a test. */
+public class WriteBehindStorageTest {
+
+  /** Storage whose batch writes fail on demand, after running a hook while the flush is on. */
+  private static class FlakyStorage extends InMemoryStorage {
+    boolean failing = false;
+    Runnable duringWrite = () -> {};
+
+    @Override
+    public void updateDocuments(List<DocumentUpdate> updates)
+        throws ExecutionException, InterruptedException {
+      this.duringWrite.run();
+      if (this.failing) {
+        throw new ExecutionException(new RuntimeException("storage unavailable"));
+      }
+      super.updateDocuments(updates);
+    }
+  }
+
+  private FlakyStorage storage;
+  private WriteBehindStorage writeBehind;
+
+  @BeforeEach
+  public void setup() {
+    this.storage = new FlakyStorage();
+    this.writeBehind = new WriteBehindStorage(this.storage, 3_600_000, Integer.MAX_VALUE);
+  }
+
+  @AfterEach
+  public void teardown() {
+    this.storage.failing = false;
+    this.writeBehind.close();
+  }
+
+  @Test
+  public void testUpdatesMergedPerDocument() throws Exception {
+    this.writeBehind.updateDocument("Rooms", "r1", Map.of("score", 1, "players", Map.of("a", 1)));
+    this.writeBehind.updateDocument("Rooms", "r1", Map.of("players", Map.of("b", 2)));
+    this.writeBehind.updateDocument("Rooms", "r2", Map.of("score", 5));
+
+    // nothing is written until the flush, but reads already see the updates
+    assertNull(this.storage.getDocument("Rooms", "r1"));
+    assertEquals(
+        Map.of("score", 1, "players", Map.of("a", 1, "b", 2)),
+        this.writeBehind.getDocument("Rooms", "r1"));
+
+    this.writeBehind.flush();
+    assertEquals(
+        Map.of("score", 1, "players", Map.of("a", 1, "b", 2)),
+        this.storage.getDocument("Rooms", "r1"));
+    assertEquals(Map.of("score", 5), this.storage.getDocument("Rooms", "r2"));
+
+    Map<String, Object> stats = this.writeBehind.stats();
+    assertEquals(3L, stats.get("queuedWrites"));
+    assertEquals(2L, stats.get("flushedWrites"));
+    assertEquals(1L, stats.get("flushes"));
+    assertEquals(0, stats.get("pending"));
+  }
+
+  @Test
+  public void testFailedFlushKeepsUpdates() throws Exception {
+    this.writeBehind.updateDocument("Rooms", "r1", Map.of("score", 1));
+    this.storage.failing = true;
+
+    assertThrows(ExecutionException.class, this.writeBehind::flush);
+    assertEquals(1, this.writeBehind.stats().get("pending"));
+    assertEquals(1L, this.writeBehind.stats().get("flushFailures"));
+    assertEquals(Map.of("score", 1), this.writeBehind.getDocument("Rooms", "r1"));
+
+    this.storage.failing = false;
+    this.writeBehind.flush();
+    assertEquals(Map.of("score", 1), this.storage.getDocument("Rooms", "r1"));
+    assertEquals(0, this.writeBehind.stats().get("pending"));
+  }
+
+  @Test
+  public void testNewerUpdatesWinOverFailedBatch() throws Exception {
+    this.writeBehind.updateDocument("Rooms", "r1", Map.of("score", 1, "name", "duel"));
+    this.storage.failing = true;
+    // an update made while the batch is being written is newer than the batch
+    this.storage.duringWrite =
+        () -> this.writeBehind.updateDocument("Rooms", "r1", Map.of("score", 2, "round", 3));
+
+    assertThrows(ExecutionException.class, this.writeBehind::flush);
+    assertEquals(
+        Map.of("score", 2, "name", "duel", "round", 3),
+        this.writeBehind.getDocument("Rooms", "r1"));
+
+    this.storage.failing = false;
+    this.storage.duringWrite = () -> {};
+    this.writeBehind.flush();
+    assertEquals(
+        Map.of("score", 2, "name", "duel", "round", 3), this.storage.getDocument("Rooms", "r1"));
+  }
+
+  @Test
+  public void testCollectionReadsOnlyFlushTheirCollection() throws Exception {
+    this.writeBehind.updateDocument("Rooms", "r1", Map.of("score", 1));
+
+    // a read over another collection does not wait for the rooms to be written
+    assertEquals(List.of(), this.writeBehind.getCollection("Users"));
+    assertEquals(0L, this.writeBehind.stats().get("flushes"));
+    assertEquals(1, this.writeBehind.stats().get("pending"));
+
+    // a read over the rooms flushes first, so it sees the waiting update
+    assertEquals(List.of(Map.of("score", 1)), this.writeBehind.getCollection("Rooms"));
+    assertEquals(1L, this.writeBehind.stats().get("flushes"));
+    assertEquals(0, this.writeBehind.stats().get("pending"));
+  }
+
+  @Test
+  public void testDeleteDropsWaitingUpdates() throws Exception {
+    this.writeBehind.updateDocument("Rooms", "r1", Map.of("score", 1));
+    this.writeBehind.deleteDocument("Rooms", "r1");
+    this.writeBehind.flush();
+
+    assertNull(this.storage.getDocument("Rooms", "r1"));
+    assertNull(this.writeBehind.getDocument("Rooms", "r1"));
+  }
+}